@@ -0,0 +1,25 @@
+package com.nnson128.cart_service.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH and writes the results as JSON to {@code jmh-result.json} unless a result format or file
+ * is given on the command line, so runs can be compared when the cart model changes.
+ */
+public final class BenchmarkMain {
+
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf") && !options.contains("-rff")) {
+            options.addAll(List.of("-rf", "json", "-rff", RESULT_FILE));
+        }
+        org.openjdk.jmh.Main.main(options.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,96 @@
+package com.nnson128.cart_service.benchmarks;
+
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.repository.BinaryCartCacheCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of the binary cart codec against the {@code @RedisHash} mapping used by the entity mode.
+ * Encoded sizes are logged at debug once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartCacheCodecBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(CartCacheCodecBenchmark.class);
+
+    @Param({"1", "20", "200"})
+    public int items;
+
+    private CartCache cart;
+    private BinaryCartCacheCodec codec;
+    private MappingRedisConverter converter;
+    private byte[] binary;
+    private RedisData redisHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cart = CartFixtures.cart(items);
+        codec = new BinaryCartCacheCodec(1024);
+        converter = new MappingRedisConverter(new RedisMappingContext());
+        converter.afterPropertiesSet();
+
+        binary = codec.encode(cart);
+        redisHash = new RedisData();
+        converter.write(cart, redisHash);
+
+        log.debug("items={} binary={} bytes, redis-hash={} bytes", items, binary.length, redisHashBytes(redisHash));
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return codec.encode(cart);
+    }
+
+    @Benchmark
+    public CartCache binaryDecode() {
+        return codec.decode(binary);
+    }
+
+    @Benchmark
+    public RedisData redisHashEncode() {
+        RedisData data = new RedisData();
+        converter.write(cart, data);
+        return data;
+    }
+
+    @Benchmark
+    public CartCache redisHashDecode() {
+        return converter.read(CartCache.class, redisHash);
+    }
+
+    /**
+     * Bytes sent with HMSET: key plus every field name and value
+     */
+    static int redisHashBytes(RedisData data) {
+        int size = (data.getKeyspace() + ":" + data.getId()).getBytes(StandardCharsets.UTF_8).length;
+        for (Map.Entry<byte[], byte[]> field : data.getBucket().rawMap().entrySet()) {
+            size += field.getKey().length + field.getValue().length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,71 @@
+package com.nnson128.cart_service.benchmarks;
+
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItem;
+import com.nnson128.cart_service.model.CartItemCache;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carts shaped like production ones: long image URLs and product names, prices in VND
+ */
+public final class CartFixtures {
+
+    private CartFixtures() {
+    }
+
+    public static CartCache cart(int itemCount) {
+        List<CartItemCache> items = new ArrayList<>(itemCount);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < itemCount; i++) {
+            BigDecimal price = new BigDecimal("149000.00").add(BigDecimal.valueOf(i * 1000L));
+            int quantity = 1 + i % 4;
+            items.add(CartItemCache.builder()
+                    .productId("6f1c2a7e-3b9d-4c1e-9a7f-" + String.format("%012d", i))
+                    .productName("Áo thun nam cổ tròn cotton 100% size " + (i % 5) + " màu " + i)
+                    .price(price)
+                    .quantity(quantity)
+                    .imageUrl("https://res.cloudinary.com/ecommerce/image/upload/v1700000000/products/" + i + ".jpg")
+                    .addedAt(1_700_000_000_000L + i * 1000L)
+                    .build());
+            total = total.add(price.multiply(BigDecimal.valueOf(quantity)));
+        }
+        return CartCache.builder()
+                .userId("b3f1e0c2-8d4a-4f5e-9c6b-1a2d3e4f5a6b")
+                .items(items)
+                .totalPrice(total)
+                .totalItems(itemCount)
+                .ttl(604800L)
+                .build();
+    }
+
+    /**
+     * The same cart as a loaded entity, the way CartService reads it from MySQL
+     */
+    public static Cart entity(int itemCount) {
+        CartCache cache = cart(itemCount);
+        Cart cart = Cart.builder()
+                .userId(cache.getUserId())
+                .totalPrice(cache.getTotalPrice())
+                .version(1_700_000_000_000L)
+                .createdAt(1_700_000_000_000L)
+                .updatedAt(1_700_000_000_000L)
+                .build();
+        for (CartItemCache item : cache.getItems()) {
+            cart.getItems().add(CartItem.builder()
+                    .cart(cart)
+                    .productId(item.getProductId())
+                    .productName(item.getProductName())
+                    .price(item.getPrice())
+                    .quantity(item.getQuantity())
+                    .imageUrl(item.getImageUrl())
+                    .createdAt(item.getAddedAt())
+                    .updatedAt(item.getAddedAt())
+                    .build());
+        }
+        return cart;
+    }
+}
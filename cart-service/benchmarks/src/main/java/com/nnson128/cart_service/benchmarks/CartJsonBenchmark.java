@@ -0,0 +1,74 @@
+package com.nnson128.cart_service.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.nnson128.cart_service.dto.ApiResponse;
+import com.nnson128.cart_service.dto.CartDTO;
+import com.nnson128.cart_service.utils.CartMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the {@code ApiResponse<CartDTO>} body returned by every cart endpoint,
+ * with the ObjectMapper settings Spring Boot applies. Body sizes are logged at debug once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartJsonBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(CartJsonBenchmark.class);
+
+    @Param({"1", "20", "200"})
+    public int items;
+
+    private ApiResponse<CartDTO> response;
+    private ObjectMapper objectMapper;
+    private ObjectWriter typedWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        response = ApiResponse.<CartDTO>builder()
+                .success(true)
+                .message("Get cart successfully")
+                .data(CartMapper.toDTO(CartFixtures.cart(items)))
+                .build();
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        typedWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructParametricType(ApiResponse.class, CartDTO.class));
+
+        log.debug("items={} body={} bytes", items, objectMapper.writeValueAsBytes(response).length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    /**
+     * With the serializer resolved up front, as a reused ObjectWriter does
+     */
+    @Benchmark
+    public byte[] serializeTypedWriter() throws JsonProcessingException {
+        return typedWriter.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,62 @@
+package com.nnson128.cart_service.benchmarks;
+
+import com.nnson128.cart_service.dto.CartDTO;
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.utils.CartMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request mapping work in CartService: entity to cache after every DB write, cache to DTO on
+ * every response, and the BigDecimal total recomputed on every change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartMappingBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int items;
+
+    private Cart entity;
+    private CartCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entity = CartFixtures.entity(items);
+        cache = CartFixtures.cart(items);
+    }
+
+    @Benchmark
+    public CartCache toCache() {
+        return CartMapper.toCache(entity);
+    }
+
+    @Benchmark
+    public CartDTO toDTO() {
+        return CartMapper.toDTO(cache);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalPrice() {
+        CartMapper.calculateTotalPrice(entity);
+        return entity.getTotalPrice();
+    }
+}
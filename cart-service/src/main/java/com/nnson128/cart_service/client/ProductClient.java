@@ -1,56 +1,226 @@
 package com.nnson128.cart_service.client;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.nnson128.cart_service.dto.ApiResponse;
+import com.nnson128.cart_service.dto.ProductBatchResponseDTO;
 import com.nnson128.cart_service.dto.ProductResponseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Product Service client with a local snapshot cache.
+ * Snapshots older than {@code refresh-after-seconds} are still served while a background
+ * reload runs; they are dropped after {@code expire-after-seconds}, or as soon as a product change event arrives.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class ProductClient {
 
+    private static final ParameterizedTypeReference<ApiResponse<ProductResponseDTO>> PRODUCT_RESPONSE =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<ApiResponse<ProductBatchResponseDTO>> BATCH_RESPONSE =
+            new ParameterizedTypeReference<>() {
+            };
+
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     @Value("${product.service.url:http://product-service:9001}")
     private String productServiceUrl;
 
-    public ProductResponseDTO getProductById(String productId) {
+    @Value("${product.service.lookup-parallelism:8}")
+    private int lookupParallelism;
+
+    @Value("${product.service.batch-size:200}")
+    private int batchSize;
+
+    @Value("${product.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${product.cache.maximum-size:10000}")
+    private long cacheMaximumSize;
+
+    @Value("${product.cache.refresh-after-seconds:30}")
+    private long refreshAfterSeconds;
+
+    @Value("${product.cache.expire-after-seconds:300}")
+    private long expireAfterSeconds;
+
+    private ExecutorService lookupExecutor;
+
+    private LoadingCache<String, ProductResponseDTO> snapshots;
+
+    @PostConstruct
+    void init() {
+        lookupExecutor = Executors.newFixedThreadPool(lookupParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "product-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (cacheEnabled) {
+            snapshots = Caffeine.newBuilder()
+                    .maximumSize(cacheMaximumSize)
+                    .refreshAfterWrite(Duration.ofSeconds(refreshAfterSeconds))
+                    .expireAfterWrite(Duration.ofSeconds(expireAfterSeconds))
+                    .executor(lookupExecutor)
+                    .recordStats()
+                    .build(this::fetchProduct);
+            CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "cart.products");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    /**
+     * Look up several products at once, keyed by id.
+     * Cached snapshots are used as they are, the rest are fetched with one batch call per
+     * {@code batch-size} products. Products that are not found or fail to load are left out of the result.
+     */
+    public Map<String, ProductResponseDTO> getProductsByIds(Collection<String> productIds) {
+        Map<String, ProductResponseDTO> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String productId : new LinkedHashSet<>(productIds)) {
+            ProductResponseDTO cached = snapshots != null ? snapshots.getIfPresent(productId) : null;
+            if (cached != null) {
+                found.put(productId, cached);
+            } else {
+                missing.add(productId);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<String> chunk = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            Map<String, ProductResponseDTO> fetched = fetchBatch(chunk);
+            if (snapshots != null) {
+                snapshots.putAll(fetched);
+            }
+            found.putAll(fetched);
+        }
+
+        Map<String, ProductResponseDTO> products = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            ProductResponseDTO product = found.get(productId);
+            if (product != null) {
+                products.put(productId, product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * One POST /api/v1/products/batch call; falls back to concurrent single lookups if it fails
+     */
+    private Map<String, ProductResponseDTO> fetchBatch(List<String> productIds) {
         try {
-            String url = productServiceUrl + "/api/v1/products/" + productId;
-            log.info("Calling Product Service URL: {}", url);
-            
-            // Get response as JsonNode to handle ApiResponse wrapper
-            JsonNode response = restTemplate.getForObject(url, JsonNode.class);
-            log.info("Product Service Response: {}", response);
-            
-            if (response != null) {
-                JsonNode successNode = response.get("success");
-                log.info("Success node: {}", successNode);
-                
-                if (successNode != null && successNode.asBoolean()) {
-                    JsonNode dataNode = response.get("data");
-                    log.info("Data node: {}", dataNode);
-                    
-                    if (dataNode != null) {
-                        ProductResponseDTO product = objectMapper.treeToValue(dataNode, ProductResponseDTO.class);
-                        log.info("Product mapped successfully: id={}, name={}, price={}", 
-                            product.getId(), product.getName(), product.getPrice());
-                        return product;
+            ApiResponse<ProductBatchResponseDTO> response = restTemplate.exchange(
+                    productServiceUrl + "/api/v1/products/batch", HttpMethod.POST,
+                    new HttpEntity<>(Map.of("ids", productIds)), BATCH_RESPONSE).getBody();
+            if (response != null && response.isSuccess() && response.getData() != null
+                    && response.getData().getProducts() != null) {
+                Map<String, ProductResponseDTO> products = new HashMap<>();
+                response.getData().getProducts().forEach((productId, product) -> {
+                    if (product != null) {
+                        products.put(productId, product);
                     }
-                }
+                });
+                return products;
             }
-            log.error("Invalid response from Product Service for productId: {}", productId);
-            return null;
+            log.warn("Invalid batch response from Product Service for {} products", productIds.size());
+        } catch (Exception e) {
+            log.warn("Batch lookup of {} products failed, falling back to single lookups", productIds.size(), e);
+        }
+        return fetchEach(productIds);
+    }
+
+    private Map<String, ProductResponseDTO> fetchEach(List<String> productIds) {
+        Map<String, ProductResponseDTO> products = new HashMap<>();
+        Map<String, CompletableFuture<ProductResponseDTO>> lookups = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            lookups.put(productId, CompletableFuture.supplyAsync(() -> getProductById(productId), lookupExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Failed to get product details for productId: {}", productId);
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(lookups.values().toArray(CompletableFuture[]::new)).join();
+
+        lookups.forEach((productId, lookup) -> {
+            ProductResponseDTO product = lookup.join();
+            if (product != null) {
+                products.put(productId, product);
+            }
+        });
+        return products;
+    }
+
+    /**
+     * Get product details, from the snapshot cache when available.
+     * Returns null when Product Service does not know the product.
+     */
+    public ProductResponseDTO getProductById(String productId) {
+        try {
+            return snapshots != null ? snapshots.get(productId) : fetchProduct(productId);
         } catch (Exception e) {
             log.error("Error calling Product Service for productId: {}", productId, e);
             throw new RuntimeException("Failed to get product details for productId: " + productId, e);
         }
     }
-}
 
+    /**
+     * Drop the cached snapshot of a changed product so the next lookup reads its current details
+     */
+    public void evict(String productId) {
+        if (snapshots != null) {
+            snapshots.invalidate(productId);
+        }
+    }
+
+    private ProductResponseDTO fetchProduct(String productId) {
+        String url = productServiceUrl + "/api/v1/products/" + productId;
+        log.debug("Calling Product Service URL: {}", url);
+
+        ApiResponse<ProductResponseDTO> response;
+        try {
+            response = restTemplate.exchange(url, HttpMethod.GET, null, PRODUCT_RESPONSE).getBody();
+        } catch (HttpClientErrorException.NotFound e) {
+            log.debug("Product not found in Product Service for productId: {}", productId);
+            return null;
+        }
+
+        if (response == null || !response.isSuccess() || response.getData() == null) {
+            log.error("Invalid response from Product Service for productId: {}", productId);
+            return null;
+        }
+        ProductResponseDTO product = response.getData();
+        log.debug("Product loaded: id={}, name={}, price={}", product.getId(), product.getName(), product.getPrice());
+        return product;
+    }
+}
@@ -0,0 +1,29 @@
+package com.nnson128.cart_service.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * Retry failed records, then publish them to {@code <topic>.DLT} instead of skipping them.
+     * Malformed messages go to the dead-letter topic straight away.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(
+            KafkaOperations<Object, Object> kafkaOperations,
+            @Value("${cart.kafka.retry-interval-ms:1000}") long retryIntervalMs,
+            @Value("${cart.kafka.retry-attempts:5}") long retryAttempts) {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
+                new DeadLetterPublishingRecoverer(kafkaOperations), new FixedBackOff(retryIntervalMs, retryAttempts));
+        errorHandler.addNotRetryableExceptions(JsonProcessingException.class);
+        return errorHandler;
+    }
+}
@@ -1,17 +1,28 @@
 package com.nnson128.cart_service.controller;
 
+import com.nnson128.cart_service.dto.AbandonedCartStatsDTO;
 import com.nnson128.cart_service.dto.ApiResponse;
+import com.nnson128.cart_service.dto.BatchCartItemsRequest;
 import com.nnson128.cart_service.dto.CartDTO;
 import com.nnson128.cart_service.dto.CartItemDTO;
+import com.nnson128.cart_service.dto.ConditionalCart;
 import com.nnson128.cart_service.dto.AddCartItemRequest;
 import com.nnson128.cart_service.service.CartService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/carts")
@@ -21,14 +32,26 @@ public class CartController {
     private final CartService cartService;
 
     @GetMapping
-    public ResponseEntity<ApiResponse<CartDTO>> getCart(Authentication authentication) {
+    public ResponseEntity<ApiResponse<CartDTO>> getCart(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         String userId = authentication.getName();
-        CartDTO cart = cartService.getCart(userId);
-        return ResponseEntity.ok(ApiResponse.<CartDTO>builder()
-                .success(true)
-                .message("Get cart successfully")
-                .data(cart)
-                .build());
+        ConditionalCart cart = cartService.getCartIfChanged(userId, ifNoneMatch);
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (cart.notModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(cart.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(cart.etag())
+                .cacheControl(cacheControl)
+                .body(ApiResponse.<CartDTO>builder()
+                        .success(true)
+                        .message("Get cart successfully")
+                        .data(cart.cart())
+                        .build());
     }
 
     @PostMapping("/items")
@@ -44,6 +67,32 @@ public class CartController {
                 .build());
     }
 
+    @PostMapping("/items/batch")
+    public ResponseEntity<ApiResponse<CartDTO>> addItemsToCart(
+            Authentication authentication,
+            @RequestBody BatchCartItemsRequest request) {
+        String userId = authentication.getName();
+        CartDTO cart = cartService.addItemsToCart(userId, request.getItems());
+        return ResponseEntity.ok(ApiResponse.<CartDTO>builder()
+                .success(true)
+                .message("Items added to cart successfully")
+                .data(cart)
+                .build());
+    }
+
+    @PostMapping("/merge")
+    public ResponseEntity<ApiResponse<CartDTO>> mergeGuestCart(
+            Authentication authentication,
+            @RequestBody BatchCartItemsRequest request) {
+        String userId = authentication.getName();
+        CartDTO cart = cartService.mergeGuestCart(userId, request.getItems());
+        return ResponseEntity.ok(ApiResponse.<CartDTO>builder()
+                .success(true)
+                .message("Guest cart merged successfully")
+                .data(cart)
+                .build());
+    }
+
     @PutMapping("/items/{productId}")
     public ResponseEntity<ApiResponse<CartDTO>> updateCartItem(
             Authentication authentication,
@@ -81,6 +130,16 @@ public class CartController {
                 .build());
     }
 
+    @GetMapping("/availability")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> getAvailability(@RequestParam List<String> productIds) {
+        Map<String, Integer> available = cartService.getAvailability(productIds);
+        return ResponseEntity.ok(ApiResponse.<Map<String, Integer>>builder()
+                .success(true)
+                .message("Get availability successfully")
+                .data(available)
+                .build());
+    }
+
     // ==================== ADMIN ENDPOINTS ====================
 
     @GetMapping("/admin/{userId}")
@@ -94,6 +153,20 @@ public class CartController {
                 .build());
     }
 
+    @GetMapping("/admin/analytics/abandoned")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<AbandonedCartStatsDTO>>> getAbandonedCartStats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "10") int top) {
+        List<AbandonedCartStatsDTO> stats = cartService.getAbandonedCartStats(from, to, top);
+        return ResponseEntity.ok(ApiResponse.<List<AbandonedCartStatsDTO>>builder()
+                .success(true)
+                .message("Get abandoned cart stats successfully")
+                .data(stats)
+                .build());
+    }
+
     @PutMapping("/admin/{userId}/items/{productId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse<CartDTO>> updateCartItemAsAdmin(
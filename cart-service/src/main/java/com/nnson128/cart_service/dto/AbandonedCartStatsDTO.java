@@ -0,0 +1,38 @@
+package com.nnson128.cart_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Abandoned carts of one day, counted on the day of the cart's last change
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AbandonedCartStatsDTO {
+    private LocalDate date;
+    private Long abandonedCarts;
+    // Approximate (HyperLogLog, about 0.8% standard error)
+    private Long abandonedUsers;
+    private Long activeUsers;
+    private BigDecimal abandonedValue;
+    private Long abandonedUnits;
+    private List<ProductStats> topProducts;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductStats {
+        private String productId;
+        private Long units;
+        private BigDecimal value;
+    }
+}
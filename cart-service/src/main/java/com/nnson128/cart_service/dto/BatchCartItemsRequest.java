@@ -0,0 +1,20 @@
+package com.nnson128.cart_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCartItemsRequest {
+    @NotEmpty(message = "Items are required")
+    @Valid
+    private List<AddCartItemRequest> items;
+}
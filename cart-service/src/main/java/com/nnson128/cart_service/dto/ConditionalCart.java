@@ -0,0 +1,11 @@
+package com.nnson128.cart_service.dto;
+
+/**
+ * Cart for a conditional GET. {@code cart} is null when the client's copy is current.
+ */
+public record ConditionalCart(String etag, CartDTO cart) {
+
+    public boolean notModified() {
+        return cart == null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.nnson128.cart_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchResponseDTO {
+    private Map<String, ProductResponseDTO> products;
+    private List<String> notFoundIds;
+}
@@ -0,0 +1,31 @@
+package com.nnson128.cart_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Product change published by product-service on {@code product.events.topic}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    public static final String DETAILS_CHANGED = "DETAILS_CHANGED";
+    public static final String STOCK_CHANGED = "STOCK_CHANGED";
+    public static final String DELETED = "DELETED";
+
+    private String type;
+    private String productId;
+    private String name;
+    private BigDecimal price;
+    private String imageUrl;
+    private Integer stock;
+    private String status;
+    private Long changedAt;
+}
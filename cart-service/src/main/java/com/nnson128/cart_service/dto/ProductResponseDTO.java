@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Data
 @Builder
@@ -17,4 +18,6 @@ public class ProductResponseDTO {
     private BigDecimal price;
     private String imageUrl;
     private String status;
+    private Integer stock;
+    private LocalDateTime updatedAt;
 }
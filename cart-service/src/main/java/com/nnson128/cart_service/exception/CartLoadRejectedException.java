@@ -0,0 +1,11 @@
+package com.nnson128.cart_service.exception;
+
+/**
+ * Thrown when a cache-miss load could not get a DB load slot in time
+ */
+public class CartLoadRejectedException extends RuntimeException {
+
+    public CartLoadRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.nnson128.cart_service.exception;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Thrown when a cart change needs more units than are left after other carts' holds
+ */
+@Getter
+public class InsufficientStockException extends RuntimeException {
+
+    private final Map<String, Integer> available;
+
+    public InsufficientStockException(Map<String, Integer> available) {
+        super("Not enough stock for products: " + available.keySet());
+        this.available = available;
+    }
+}
@@ -0,0 +1,148 @@
+package com.nnson128.cart_service.grpc;
+
+import com.nnson128.cart_service.exception.CartLoadRejectedException;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.service.CartService;
+import com.nnson128.cart_service.utils.MoneyUtils;
+import com.nnson128.grpc.cart.CartItemMessage;
+import com.nnson128.grpc.cart.CartMessage;
+import com.nnson128.grpc.cart.CartServiceGrpc;
+import com.nnson128.grpc.cart.ClearCartRequest;
+import com.nnson128.grpc.cart.ClearCartResponse;
+import com.nnson128.grpc.cart.ConsumeStockHoldsRequest;
+import com.nnson128.grpc.cart.ConsumeStockHoldsResponse;
+import com.nnson128.grpc.cart.GetCartRequest;
+import com.nnson128.grpc.cart.GetCartsBatchRequest;
+import com.nnson128.grpc.cart.GetCartsBatchResponse;
+import com.nnson128.grpc.cart.StockHold;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Internal cart reads for checkout, served from the same cache as the REST API
+ * but mapped straight from the cached cart without the JSON envelope.
+ */
+@Slf4j
+@GrpcService
+@RequiredArgsConstructor
+public class CartGrpcService extends CartServiceGrpc.CartServiceImplBase {
+
+    private final CartService cartService;
+
+    @Value("${cart.grpc.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Override
+    public void getCart(GetCartRequest request, StreamObserver<CartMessage> responseObserver) {
+        if (request.getUserId().isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("user_id is required").asRuntimeException());
+            return;
+        }
+        try {
+            responseObserver.onNext(loadCart(request.getUserId()));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("gRPC GetCart failed for userId: {}", request.getUserId(), e);
+            responseObserver.onError(toStatus(e).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void getCartsBatch(GetCartsBatchRequest request, StreamObserver<GetCartsBatchResponse> responseObserver) {
+        if (request.getUserIdsCount() > maxBatchSize) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At most " + maxBatchSize + " user_ids per call").asRuntimeException());
+            return;
+        }
+        try {
+            GetCartsBatchResponse.Builder response = GetCartsBatchResponse.newBuilder();
+            for (String userId : request.getUserIdsList()) {
+                response.addCarts(loadCart(userId));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("gRPC GetCartsBatch failed", e);
+            responseObserver.onError(toStatus(e).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void clearCart(ClearCartRequest request, StreamObserver<ClearCartResponse> responseObserver) {
+        if (request.getUserId().isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("user_id is required").asRuntimeException());
+            return;
+        }
+        try {
+            cartService.clearCart(request.getUserId());
+            responseObserver.onNext(ClearCartResponse.newBuilder().setSuccess(true).build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("gRPC ClearCart failed for userId: {}", request.getUserId(), e);
+            responseObserver.onError(toStatus(e).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void consumeStockHolds(ConsumeStockHoldsRequest request,
+                                  StreamObserver<ConsumeStockHoldsResponse> responseObserver) {
+        if (request.getUserId().isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("user_id is required").asRuntimeException());
+            return;
+        }
+        try {
+            ConsumeStockHoldsResponse.Builder response = ConsumeStockHoldsResponse.newBuilder();
+            cartService.consumeStockHolds(request.getUserId()).forEach((productId, quantity) ->
+                    response.addHolds(StockHold.newBuilder().setProductId(productId).setQuantity(quantity)));
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("gRPC ConsumeStockHolds failed for userId: {}", request.getUserId(), e);
+            responseObserver.onError(toStatus(e).asRuntimeException());
+        }
+    }
+
+    /**
+     * Rejected cache-miss loads are retryable; anything else is a server error
+     */
+    private static Status toStatus(Exception e) {
+        Status status = e instanceof CartLoadRejectedException ? Status.UNAVAILABLE : Status.INTERNAL;
+        return status.withDescription(e.getMessage());
+    }
+
+    private CartMessage loadCart(String userId) {
+        return cartService.findCart(userId)
+                .map(CartGrpcService::toMessage)
+                .orElseGet(() -> CartMessage.newBuilder().setUserId(userId).build());
+    }
+
+    private static CartMessage toMessage(CartCache cart) {
+        CartMessage.Builder message = CartMessage.newBuilder()
+                .setUserId(cart.getUserId())
+                .setTotalPriceMinor(MoneyUtils.toMinorUnits(cart.getTotalPrice()))
+                .setTotalItems(cart.getTotalItems() != null ? cart.getTotalItems() : cart.getItems().size())
+                .setVersion(cart.getVersion() != null ? cart.getVersion() : 0L);
+        for (CartItemCache item : cart.getItems()) {
+            CartItemMessage.Builder line = CartItemMessage.newBuilder()
+                    .setProductId(item.getProductId())
+                    .setPriceMinor(MoneyUtils.toMinorUnits(item.getPrice()))
+                    .setQuantity(item.getQuantity() != null ? item.getQuantity() : 0);
+            if (item.getProductName() != null) {
+                line.setProductName(item.getProductName());
+            }
+            if (item.getImageUrl() != null) {
+                line.setImageUrl(item.getImageUrl());
+            }
+            if (item.getAddedAt() != null) {
+                line.setAddedAt(item.getAddedAt());
+            }
+            message.addItems(line);
+        }
+        return message.build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.nnson128.cart_service.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthGrpc;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Only lets internal services call the cart gRPC API: every call must carry
+ * {@code authorization: Bearer <cart.grpc.auth-token>}. Without a configured token every call is refused,
+ * since ClearCart and ConsumeStockHolds change any user's cart. Health checks are not authenticated.
+ */
+@Slf4j
+@GrpcGlobalServerInterceptor
+public class ServiceTokenInterceptor implements ServerInterceptor {
+
+    private static final Metadata.Key<String> AUTHORIZATION =
+            Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+    private static final String BEARER = "Bearer ";
+
+    @Value("${cart.grpc.auth-token:}")
+    private String authToken;
+
+    @PostConstruct
+    void init() {
+        if (authToken.isBlank()) {
+            log.warn("cart.grpc.auth-token is not set, every cart gRPC call will be refused");
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (HealthGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) {
+            return next.startCall(call, headers);
+        }
+        if (!authenticated(headers.get(AUTHORIZATION))) {
+            call.close(Status.UNAUTHENTICATED.withDescription("A valid service token is required"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        return next.startCall(call, headers);
+    }
+
+    private boolean authenticated(String authorization) {
+        if (authToken.isBlank() || authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        return MessageDigest.isEqual(authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8),
+                authToken.getBytes(StandardCharsets.UTF_8));
+    }
+}
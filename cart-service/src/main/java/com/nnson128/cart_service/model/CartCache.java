@@ -25,6 +25,11 @@ public class CartCache implements Serializable {
     private List<CartItemCache> items;
     private BigDecimal totalPrice;
     private Integer totalItems;
+
+    /**
+     * Bumped by every change, as max(previous + 1, current time in ms)
+     */
+    private Long version;
     
     @TimeToLive
     private Long ttl;
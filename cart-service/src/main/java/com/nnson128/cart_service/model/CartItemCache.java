@@ -20,4 +20,5 @@ public class CartItemCache implements Serializable {
     private BigDecimal price;
     private Integer quantity;
     private String imageUrl;
+    private Long addedAt;
 }
@@ -0,0 +1,266 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.utils.MoneyUtils;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned binary cart layout.
+ * <pre>
+ * header : magic 'C', version, flags (bit 0 = LZ4 body), [varint raw body length if LZ4]
+ * body   : userId, presence bits, [totalPrice], [totalItems], [item count, items...], [version]
+ * item   : productId, presence bits, [productName], [price], [quantity], [imageUrl], [addedAt]
+ * </pre>
+ * Strings are varint length + UTF-8, prices are zigzag varints in minor units,
+ * other numbers are zigzag varints. TTL is kept on the Redis key, not in the value.
+ */
+@Component
+public class BinaryCartCacheCodec implements CartCacheCodec {
+
+    static final byte MAGIC = 'C';
+    static final byte VERSION = 1;
+    static final int FLAG_LZ4 = 1;
+
+    private static final int CART_TOTAL_PRICE = 1;
+    private static final int CART_TOTAL_ITEMS = 1 << 1;
+    private static final int CART_ITEMS = 1 << 2;
+    private static final int CART_VERSION = 1 << 3;
+
+    private static final int ITEM_NAME = 1;
+    private static final int ITEM_PRICE = 1 << 1;
+    private static final int ITEM_QUANTITY = 1 << 2;
+    private static final int ITEM_IMAGE = 1 << 3;
+    private static final int ITEM_ADDED_AT = 1 << 4;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final int compressionThreshold;
+
+    public BinaryCartCacheCodec(@Value("${cart.cache.codec.compression-threshold-bytes:1024}") int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] encode(CartCache cart) {
+        Writer body = new Writer();
+        body.string(cart.getUserId());
+        int flags = (cart.getTotalPrice() != null ? CART_TOTAL_PRICE : 0)
+                | (cart.getTotalItems() != null ? CART_TOTAL_ITEMS : 0)
+                | (cart.getItems() != null ? CART_ITEMS : 0)
+                | (cart.getVersion() != null ? CART_VERSION : 0);
+        body.varint(flags);
+        if (cart.getTotalPrice() != null) {
+            body.varlong(zigzag(MoneyUtils.toMinorUnits(cart.getTotalPrice())));
+        }
+        if (cart.getTotalItems() != null) {
+            body.varlong(zigzag(cart.getTotalItems()));
+        }
+        if (cart.getItems() != null) {
+            body.varint(cart.getItems().size());
+            for (CartItemCache item : cart.getItems()) {
+                writeItem(body, item);
+            }
+        }
+        if (cart.getVersion() != null) {
+            body.varlong(zigzag(cart.getVersion()));
+        }
+
+        byte[] raw = body.toByteArray();
+        if (raw.length >= compressionThreshold) {
+            LZ4Compressor compressor = LZ4.fastCompressor();
+            byte[] compressed = new byte[compressor.maxCompressedLength(raw.length)];
+            int compressedLength = compressor.compress(raw, 0, raw.length, compressed, 0);
+            Writer out = new Writer();
+            out.header(FLAG_LZ4);
+            out.varint(raw.length);
+            if (compressedLength + out.size() < raw.length) {
+                out.write(compressed, 0, compressedLength);
+                return out.toByteArray();
+            }
+        }
+        Writer out = new Writer();
+        out.header(0);
+        out.write(raw, 0, raw.length);
+        return out.toByteArray();
+    }
+
+    @Override
+    public CartCache decode(byte[] bytes) {
+        if (bytes.length < 3 || bytes[0] != MAGIC) {
+            throw new IllegalArgumentException("Not a binary cart cache entry");
+        }
+        if (bytes[1] != VERSION) {
+            throw new IllegalArgumentException("Unsupported cart cache layout version: " + bytes[1]);
+        }
+        Reader reader = new Reader(bytes, 3);
+        if ((bytes[2] & FLAG_LZ4) != 0) {
+            int rawLength = reader.varint();
+            byte[] raw = new byte[rawLength];
+            LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+            decompressor.decompress(bytes, reader.position, raw, 0, rawLength);
+            reader = new Reader(raw, 0);
+        }
+
+        CartCache cart = new CartCache();
+        cart.setUserId(reader.string());
+        int flags = reader.varint();
+        if ((flags & CART_TOTAL_PRICE) != 0) {
+            cart.setTotalPrice(MoneyUtils.fromMinorUnits(unzigzag(reader.varlong())));
+        }
+        if ((flags & CART_TOTAL_ITEMS) != 0) {
+            cart.setTotalItems((int) unzigzag(reader.varlong()));
+        }
+        if ((flags & CART_ITEMS) != 0) {
+            int count = reader.varint();
+            List<CartItemCache> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(readItem(reader));
+            }
+            cart.setItems(items);
+        }
+        if ((flags & CART_VERSION) != 0) {
+            cart.setVersion(unzigzag(reader.varlong()));
+        }
+        return cart;
+    }
+
+    private void writeItem(Writer out, CartItemCache item) {
+        out.string(item.getProductId());
+        int flags = (item.getProductName() != null ? ITEM_NAME : 0)
+                | (item.getPrice() != null ? ITEM_PRICE : 0)
+                | (item.getQuantity() != null ? ITEM_QUANTITY : 0)
+                | (item.getImageUrl() != null ? ITEM_IMAGE : 0)
+                | (item.getAddedAt() != null ? ITEM_ADDED_AT : 0);
+        out.varint(flags);
+        if (item.getProductName() != null) {
+            out.string(item.getProductName());
+        }
+        if (item.getPrice() != null) {
+            out.varlong(zigzag(MoneyUtils.toMinorUnits(item.getPrice())));
+        }
+        if (item.getQuantity() != null) {
+            out.varlong(zigzag(item.getQuantity()));
+        }
+        if (item.getImageUrl() != null) {
+            out.string(item.getImageUrl());
+        }
+        if (item.getAddedAt() != null) {
+            out.varlong(zigzag(item.getAddedAt()));
+        }
+    }
+
+    private CartItemCache readItem(Reader in) {
+        CartItemCache item = new CartItemCache();
+        item.setProductId(in.string());
+        int flags = in.varint();
+        if ((flags & ITEM_NAME) != 0) {
+            item.setProductName(in.string());
+        }
+        if ((flags & ITEM_PRICE) != 0) {
+            item.setPrice(MoneyUtils.fromMinorUnits(unzigzag(in.varlong())));
+        }
+        if ((flags & ITEM_QUANTITY) != 0) {
+            item.setQuantity((int) unzigzag(in.varlong()));
+        }
+        if ((flags & ITEM_IMAGE) != 0) {
+            item.setImageUrl(in.string());
+        }
+        if ((flags & ITEM_ADDED_AT) != 0) {
+            item.setAddedAt(unzigzag(in.varlong()));
+        }
+        return item;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(256);
+        }
+
+        void header(int flags) {
+            write(MAGIC);
+            write(VERSION);
+            write(flags);
+        }
+
+        void varint(int value) {
+            varlong(value & 0xFFFFFFFFL);
+        }
+
+        void varlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        /**
+         * Null strings are written as length 0, empty strings as length 1 with no bytes
+         */
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1);
+            write(utf8, 0, utf8.length);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int varint() {
+            return (int) varlong();
+        }
+
+        long varlong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in cart cache entry");
+        }
+
+        String string() {
+            int length = varint();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(bytes, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+    }
+}
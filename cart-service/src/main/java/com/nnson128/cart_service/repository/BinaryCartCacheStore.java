@@ -0,0 +1,80 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.service.CacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Stores the cart as one binary value at {@code cart:bin:{userId}} written with {@link CartCacheCodec}.
+ * Entries still stored as {@code @RedisHash} from the entity mode are read and rewritten in the new layout.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "cart.cache", name = "storage-mode", havingValue = "binary")
+public class BinaryCartCacheStore implements CartCacheStore {
+
+    public static final String KEY_PREFIX = "cart:bin:";
+    private static final String LEGACY_KEY_PREFIX = "Cart:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final CartCacheCodec codec;
+    private final CartCacheRepository legacyRepository;
+
+    @Override
+    public Optional<CartCache> findByUserId(String userId) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key(userId)));
+        if (value != null) {
+            return Optional.of(codec.decode(value));
+        }
+
+        Optional<CartCache> legacy = legacyRepository.findByUserId(userId);
+        legacy.ifPresent(cart -> {
+            log.debug("Migrating cached cart to binary layout for userId: {}", userId);
+            if (cart.getTtl() == null) {
+                Long remaining = redisTemplate.getExpire(LEGACY_KEY_PREFIX + userId);
+                cart.setTtl(remaining != null && remaining > 0 ? remaining : null);
+            }
+            save(cart);
+            legacyRepository.deleteById(userId);
+        });
+        return legacy;
+    }
+
+    @Override
+    public void save(CartCache cart) {
+        byte[] value = codec.encode(cart);
+        // Entries without a ttl (e.g. migrated legacy entries without expiry) get the normal cart ttl
+        Expiration expiration = Expiration.seconds(cart.getTtl() != null ? cart.getTtl() : CacheService.CACHE_TTL);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(key(cart.getUserId()), value, expiration, RedisStringCommands.SetOption.upsert()));
+    }
+
+    @Override
+    public void deleteById(String userId) {
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().del(key(userId)));
+        legacyRepository.deleteById(userId);
+    }
+
+    @Override
+    public boolean existsById(String userId) {
+        Boolean exists = redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.keyCommands().exists(key(userId)));
+        return Boolean.TRUE.equals(exists) || legacyRepository.existsById(userId);
+    }
+
+    private static byte[] key(String userId) {
+        return (KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,13 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+
+/**
+ * Serialized form of a cached cart, used by the {@code binary} storage mode
+ */
+public interface CartCacheCodec {
+
+    byte[] encode(CartCache cart);
+
+    CartCache decode(byte[] bytes);
+}
@@ -0,0 +1,39 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+
+import java.util.Optional;
+
+/**
+ * Redis storage layout for cached carts.
+ * Selected per deployment with {@code cart.cache.storage-mode}.
+ */
+public interface CartCacheStore {
+
+    Optional<CartCache> findByUserId(String userId);
+
+    /**
+     * Write the whole cart, replacing whatever is stored for the user
+     */
+    void save(CartCache cart);
+
+    /**
+     * Write a single line item plus the cart totals.
+     * Layouts that cannot update one field fall back to a full write.
+     */
+    default void saveItem(CartCache cart, String productId) {
+        save(cart);
+    }
+
+    /**
+     * Remove a single line item and write the cart totals.
+     * Layouts that cannot update one field fall back to a full write.
+     */
+    default void removeItem(CartCache cart, String productId) {
+        save(cart);
+    }
+
+    void deleteById(String userId);
+
+    boolean existsById(String userId);
+}
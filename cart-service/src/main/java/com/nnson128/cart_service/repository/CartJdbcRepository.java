@@ -0,0 +1,175 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Batched JDBC writes of whole carts into {@code carts}/{@code cart_items},
+ * used by the write-behind flusher instead of per-cart JPA saves,
+ * set-based repricing of one product across all carts and chunked purging of old carts.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CartJdbcRepository {
+
+    private static final String DELETE_ITEMS =
+            "DELETE FROM cart_items WHERE user_id = ?";
+    private static final String DELETE_CART =
+            "DELETE FROM carts WHERE user_id = ?";
+    private static final String UPSERT_CART =
+            "INSERT INTO carts (user_id, total_price, version, created_at, updated_at) VALUES (?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE total_price = VALUES(total_price), version = VALUES(version), "
+                    + "updated_at = VALUES(updated_at)";
+    private static final String INSERT_ITEM =
+            "INSERT INTO cart_items (user_id, product_id, product_name, price, quantity, image_url, created_at, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String FIND_USERS_BY_PRODUCT =
+            "SELECT DISTINCT user_id FROM cart_items WHERE product_id = ?";
+    private static final String REPRICE_CART_TOTALS =
+            "UPDATE carts c SET c.total_price = c.total_price + (SELECT SUM((? - i.price) * i.quantity) FROM cart_items i "
+                    + "WHERE i.user_id = c.user_id AND i.product_id = ? AND i.price <> ?), "
+                    + "c.version = GREATEST(COALESCE(c.version, 0) + 1, ?) "
+                    + "WHERE c.user_id IN (SELECT user_id FROM cart_items WHERE product_id = ? AND price <> ?)";
+    private static final String REPRICE_ITEMS =
+            "UPDATE cart_items SET product_name = ?, price = ?, image_url = ? WHERE product_id = ?";
+
+    private static final String BACKFILL_UPDATED_AT =
+            "UPDATE carts SET updated_at = COALESCE(created_at, 0) WHERE updated_at IS NULL LIMIT ?";
+    private static final String FIND_NOT_UPDATED_SINCE =
+            "SELECT user_id, updated_at FROM carts WHERE updated_at < ? AND (updated_at > ? OR (updated_at = ? AND user_id > ?)) "
+                    + "ORDER BY updated_at, user_id LIMIT ?";
+    private static final String LOCK_NOT_UPDATED_SINCE =
+            "SELECT user_id FROM carts WHERE updated_at < ? AND user_id IN (%s) FOR UPDATE";
+    private static final String DELETE_ITEMS_OF_CARTS =
+            "DELETE FROM cart_items WHERE user_id IN (%s)";
+    private static final String DELETE_CARTS =
+            "DELETE FROM carts WHERE user_id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Set a missing updated_at to created_at (0 when that is missing too), at most {@code limit} rows.
+     * Returns the number of rows changed.
+     */
+    public int backfillUpdatedAt(int limit) {
+        return jdbcTemplate.update(BACKFILL_UPDATED_AT, limit);
+    }
+
+    /**
+     * One keyset page of carts last updated before {@code cutoff}, ordered by (updated_at, user_id)
+     * and starting after the given position (idx_carts_updated_at).
+     */
+    public List<PurgeCandidate> findNotUpdatedSince(long cutoff, long afterUpdatedAt, String afterUserId, int limit) {
+        return jdbcTemplate.query(FIND_NOT_UPDATED_SINCE,
+                (rs, rowNum) -> new PurgeCandidate(rs.getString("user_id"), rs.getLong("updated_at")),
+                cutoff, afterUpdatedAt, afterUpdatedAt, afterUserId, limit);
+    }
+
+    /**
+     * Delete the given carts that are still older than {@code cutoff}, in one short transaction.
+     * Carts changed since they were selected are skipped. Returns the deleted user ids and item count.
+     */
+    @Transactional
+    public PurgeResult deleteNotUpdatedSince(List<String> userIds, long cutoff) {
+        if (userIds.isEmpty()) {
+            return new PurgeResult(List.of(), 0);
+        }
+        Object[] lockArgs = new Object[userIds.size() + 1];
+        lockArgs[0] = cutoff;
+        for (int i = 0; i < userIds.size(); i++) {
+            lockArgs[i + 1] = userIds.get(i);
+        }
+        List<String> locked = jdbcTemplate.queryForList(
+                String.format(LOCK_NOT_UPDATED_SINCE, placeholders(userIds.size())), String.class, lockArgs);
+        if (locked.isEmpty()) {
+            return new PurgeResult(List.of(), 0);
+        }
+        String in = placeholders(locked.size());
+        int items = jdbcTemplate.update(String.format(DELETE_ITEMS_OF_CARTS, in), locked.toArray());
+        jdbcTemplate.update(String.format(DELETE_CARTS, in), locked.toArray());
+        return new PurgeResult(locked, items);
+    }
+
+    public record PurgeCandidate(String userId, long updatedAt) {
+    }
+
+    public record PurgeResult(List<String> userIds, int items) {
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Users whose stored cart holds the product (uses idx_cart_items_product_id)
+     */
+    public List<String> findUserIdsByProductId(String productId) {
+        return jdbcTemplate.queryForList(FIND_USERS_BY_PRODUCT, String.class, productId);
+    }
+
+    /**
+     * Apply new product details to every stored line of the product and shift the
+     * affected cart totals by the price difference, without loading any cart.
+     * updated_at is left alone: a reprice is not cart activity and must not keep an abandoned cart from the purge.
+     * Returns the number of lines updated.
+     */
+    @Transactional
+    public int repriceProduct(String productId, String productName, BigDecimal price, String imageUrl) {
+        jdbcTemplate.update(REPRICE_CART_TOTALS, price, productId, price, System.currentTimeMillis(), productId, price);
+        return jdbcTemplate.update(REPRICE_ITEMS, productName, price, imageUrl, productId);
+    }
+
+    /**
+     * Replace the stored state of every given cart in one transaction.
+     * Carts without items are deleted, matching what clearCart leaves behind.
+     */
+    @Transactional
+    public void saveAll(Collection<CartCache> carts) {
+        long now = System.currentTimeMillis();
+        List<Object[]> allUsers = new ArrayList<>();
+        List<Object[]> emptyCarts = new ArrayList<>();
+        List<Object[]> cartRows = new ArrayList<>();
+        List<Object[]> itemRows = new ArrayList<>();
+
+        for (CartCache cart : carts) {
+            allUsers.add(new Object[]{cart.getUserId()});
+            if (cart.getItems().isEmpty()) {
+                emptyCarts.add(new Object[]{cart.getUserId()});
+                continue;
+            }
+            cartRows.add(new Object[]{cart.getUserId(), cart.getTotalPrice(), cart.getVersion(), now, now});
+            for (CartItemCache item : cart.getItems()) {
+                itemRows.add(new Object[]{
+                        cart.getUserId(),
+                        item.getProductId(),
+                        item.getProductName(),
+                        item.getPrice(),
+                        item.getQuantity(),
+                        item.getImageUrl(),
+                        item.getAddedAt() != null ? item.getAddedAt() : now,
+                        now
+                });
+            }
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_ITEMS, allUsers);
+        if (!emptyCarts.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_CART, emptyCarts);
+        }
+        if (!cartRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_CART, cartRows);
+            jdbcTemplate.batchUpdate(INSERT_ITEM, itemRows);
+        }
+    }
+}
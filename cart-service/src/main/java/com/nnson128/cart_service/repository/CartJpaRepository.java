@@ -1,9 +1,22 @@
 package com.nnson128.cart_service.repository;
 
 import com.nnson128.cart_service.model.Cart;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface CartJpaRepository extends JpaRepository<Cart, String> {
+
+    /**
+     * Read the cart with its row locked (SELECT ... FOR UPDATE) until the current transaction ends
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.userId = :userId")
+    Optional<Cart> findByIdForUpdate(@Param("userId") String userId);
 }
@@ -0,0 +1,49 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * MySQL layout for persisted carts.
+ * Selected per deployment with {@code cart.persistence.layout}.
+ */
+public interface CartStore {
+
+    Optional<Cart> findById(String userId);
+
+    /**
+     * Load a cart that is about to be changed and saved in the current transaction
+     */
+    Optional<Cart> findByIdForUpdate(String userId);
+
+    /**
+     * New empty cart for the user, to be filled and passed to {@link #save}
+     */
+    Cart create(String userId);
+
+    Cart save(Cart cart);
+
+    void deleteById(String userId);
+
+    /**
+     * Replace the stored state of every given cart in one transaction (write-behind flush).
+     * Carts without items are deleted.
+     */
+    void saveAll(Collection<CartCache> carts);
+
+    /**
+     * Users whose stored cart holds the product
+     */
+    List<String> findUserIdsByProductId(String productId);
+
+    /**
+     * Apply new product details to every stored line of the product and shift the
+     * affected cart totals by the price difference. Returns the number of lines updated.
+     */
+    int repriceProduct(String productId, String productName, BigDecimal price, String imageUrl);
+}
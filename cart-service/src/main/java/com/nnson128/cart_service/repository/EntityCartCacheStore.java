@@ -0,0 +1,39 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Stores the cart as one {@code @RedisHash} entity. Every write rewrites all item fields.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "cart.cache", name = "storage-mode", havingValue = "entity", matchIfMissing = true)
+public class EntityCartCacheStore implements CartCacheStore {
+
+    private final CartCacheRepository cartCacheRepository;
+
+    @Override
+    public Optional<CartCache> findByUserId(String userId) {
+        return cartCacheRepository.findByUserId(userId);
+    }
+
+    @Override
+    public void save(CartCache cart) {
+        cartCacheRepository.save(cart);
+    }
+
+    @Override
+    public void deleteById(String userId) {
+        cartCacheRepository.deleteById(userId);
+    }
+
+    @Override
+    public boolean existsById(String userId) {
+        return cartCacheRepository.existsById(userId);
+    }
+}
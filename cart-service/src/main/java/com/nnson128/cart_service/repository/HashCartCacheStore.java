@@ -0,0 +1,408 @@
+package com.nnson128.cart_service.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.utils.MoneyUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Stores each cart as a plain Redis hash with one pair of fields per line item:
+ * <pre>
+ * cart:items:{userId}
+ *   _v          layout version, only written by a full save
+ *   totalPrice  minor units
+ *   totalItems  number of lines
+ *   version     cart version, bumped by every change
+ *   q:{productId}  quantity
+ *   i:{productId}  {"productName","price","imageUrl","addedAt"}, price in minor units
+ * </pre>
+ * Changing one line is a single HSET (or HDEL) plus EXPIRE in one pipeline,
+ * independent of how many items the cart holds. A delta landing on an expired key
+ * leaves a hash without {@code _v}, which reads treat as a miss.
+ * <p>
+ * The {@code addItem}/{@code updateItem}/{@code removeItem} variants run as Lua scripts
+ * (scripts/cart) that read the line, change it and adjust the running totals inside Redis,
+ * so concurrent changes to one cart need no locking. They are used when Redis is the
+ * authoritative cart store and also add the user to the given dirty set and to
+ * {@code cart:product:{productId}} for every line they add, so product changes can find
+ * carts that are not flushed to DB yet.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "cart.cache", name = "storage-mode", havingValue = "hash")
+public class HashCartCacheStore implements CartCacheStore {
+
+    public static final String KEY_PREFIX = "cart:items:";
+    public static final String PRODUCT_INDEX_PREFIX = "cart:product:";
+    public static final String LAYOUT_FIELD = "_v";
+    public static final String LAYOUT_VERSION = "1";
+    public static final String TOTAL_PRICE_FIELD = "totalPrice";
+    public static final String TOTAL_ITEMS_FIELD = "totalItems";
+    public static final String VERSION_FIELD = "version";
+    public static final String QUANTITY_PREFIX = "q:";
+    public static final String ITEM_PREFIX = "i:";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADD_ITEM_SCRIPT = versionedScript("add_item.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADD_ITEMS_SCRIPT = versionedScript("add_items.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> UPDATE_ITEM_SCRIPT = versionedScript("update_item.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REMOVE_ITEM_SCRIPT = versionedScript("remove_item.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SAVE_CART_SCRIPT = script("save_cart.lua");
+    private static final RedisScript<Long> REPRICE_ITEM_SCRIPT = versionedScript("reprice_item.lua", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Optional<CartCache> findByUserId(String userId) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(key(userId));
+        if (!LAYOUT_VERSION.equals(fields.get(LAYOUT_FIELD))) {
+            return Optional.empty();
+        }
+        return Optional.of(toCart(userId, fields));
+    }
+
+    /**
+     * Read several carts in one pipeline. Users without a complete hash are left out.
+     */
+    public Map<String, CartCache> findAllByUserIds(List<String> userIds) {
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String userId : userIds) {
+                conn.hGetAll(key(userId));
+            }
+            return null;
+        });
+
+        Map<String, CartCache> carts = new LinkedHashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> fields = (Map<Object, Object>) results.get(i);
+            if (fields != null && LAYOUT_VERSION.equals(fields.get(LAYOUT_FIELD))) {
+                carts.put(userIds.get(i), toCart(userIds.get(i), fields));
+            }
+        }
+        return carts;
+    }
+
+    @Override
+    public void save(CartCache cart) {
+        String key = key(cart.getUserId());
+        Map<String, String> fields = fieldsOf(cart);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.multi();
+            conn.del(key);
+            conn.hMSet(key, fields);
+            conn.expire(key, cart.getTtl());
+            conn.exec();
+            return null;
+        });
+    }
+
+    @Override
+    public void saveItem(CartCache cart, String productId) {
+        String key = key(cart.getUserId());
+        Map<String, String> fields = new LinkedHashMap<>();
+        cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(productId))
+                .findFirst()
+                .ifPresent(item -> putItem(fields, item));
+        putTotals(fields, cart);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hMSet(key, fields);
+            conn.expire(key, cart.getTtl());
+            return null;
+        });
+    }
+
+    @Override
+    public void removeItem(CartCache cart, String productId) {
+        String key = key(cart.getUserId());
+        Map<String, String> fields = new LinkedHashMap<>();
+        putTotals(fields, cart);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hDel(key, QUANTITY_PREFIX + productId, ITEM_PREFIX + productId);
+            conn.hMSet(key, fields);
+            conn.expire(key, cart.getTtl());
+            return null;
+        });
+    }
+
+    /**
+     * Add quantity to a line (creating it if needed) in one atomic script.
+     * Details of an existing line are only overwritten when {@code replaceDetails} is set.
+     * Returns empty when the cart is not loaded into Redis yet.
+     */
+    public Optional<CartCache> addItem(String userId, CartItemCache item, int quantity,
+                                       boolean replaceDetails, long ttl, String dirtyKey) {
+        List<?> result = redisTemplate.execute(ADD_ITEM_SCRIPT,
+                List.of(key(userId), dirtyKey, productIndexKey(item.getProductId())),
+                userId,
+                item.getProductId(),
+                Integer.toString(quantity),
+                writeItem(item),
+                replaceDetails ? "1" : "0",
+                Long.toString(ttl));
+        return toLoadedCart(userId, result);
+    }
+
+    /**
+     * Apply several lines in one atomic script. Each item's quantity is added to the stored one,
+     * or replaces it when larger if {@code keepLargerQuantity} is set.
+     * Details of existing lines are only overwritten for products in {@code replaceDetails}.
+     * Returns empty when the cart is not loaded into Redis yet.
+     */
+    public Optional<CartCache> addItems(String userId, List<CartItemCache> items, Set<String> replaceDetails,
+                                        boolean keepLargerQuantity, long ttl, String dirtyKey) {
+        List<String> keys = new ArrayList<>(List.of(key(userId), dirtyKey));
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        args.add(Long.toString(ttl));
+        args.add(keepLargerQuantity ? "max" : "sum");
+        for (CartItemCache item : items) {
+            keys.add(productIndexKey(item.getProductId()));
+            args.add(item.getProductId());
+            args.add(Integer.toString(item.getQuantity()));
+            args.add(writeItem(item));
+            args.add(replaceDetails.contains(item.getProductId()) ? "1" : "0");
+        }
+        List<?> result = redisTemplate.execute(ADD_ITEMS_SCRIPT, keys, args.toArray());
+        return toLoadedCart(userId, result);
+    }
+
+    /**
+     * Replace the name, price and image of a line after a product change, adjusting the total.
+     * Returns false when the cart is not loaded or does not hold the product (the user is then
+     * dropped from the product index).
+     */
+    public boolean repriceItem(String userId, CartItemCache details, String dirtyKey) {
+        Long repriced = redisTemplate.execute(REPRICE_ITEM_SCRIPT,
+                List.of(key(userId), dirtyKey, productIndexKey(details.getProductId())),
+                userId,
+                details.getProductId(),
+                writeItem(details));
+        return repriced != null && repriced == 1L;
+    }
+
+    /**
+     * Users whose carts got the product through a write-behind change
+     */
+    public Set<String> findUserIdsByProductId(String productId) {
+        Set<String> userIds = redisTemplate.opsForSet().members(productIndexKey(productId));
+        return userIds != null ? userIds : Set.of();
+    }
+
+    /**
+     * Set the quantity of a line in one atomic script.
+     * Returns empty when the cart is not loaded into Redis yet.
+     */
+    public Optional<CartCache> updateItem(String userId, String productId, int quantity, long ttl, String dirtyKey) {
+        List<?> result = redisTemplate.execute(UPDATE_ITEM_SCRIPT, List.of(key(userId), dirtyKey),
+                userId,
+                productId,
+                Integer.toString(quantity),
+                Long.toString(ttl));
+        Optional<CartCache> cart = toLoadedCart(userId, result);
+        if (cart.isPresent() && cart.get().getItems().stream().noneMatch(item -> item.getProductId().equals(productId))) {
+            throw new RuntimeException("Product not found in cart");
+        }
+        return cart;
+    }
+
+    /**
+     * Remove a line in one atomic script.
+     * Returns empty when the cart is not loaded into Redis yet.
+     */
+    public Optional<CartCache> removeItem(String userId, String productId, long ttl, String dirtyKey) {
+        List<?> result = redisTemplate.execute(REMOVE_ITEM_SCRIPT, List.of(key(userId), dirtyKey),
+                userId,
+                productId,
+                Long.toString(ttl));
+        return toLoadedCart(userId, result);
+    }
+
+    /**
+     * Replace the stored cart, optionally only if none is stored yet, and return what is stored afterwards.
+     * The cart is added to {@code dirtyKey} when given.
+     */
+    public CartCache replace(CartCache cart, boolean onlyIfAbsent, long ttl, String dirtyKey) {
+        List<String> args = new ArrayList<>();
+        args.add(cart.getUserId());
+        args.add(onlyIfAbsent ? "1" : "0");
+        args.add(Long.toString(ttl));
+        args.add(dirtyKey != null ? "1" : "0");
+        fieldsOf(cart).forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+
+        List<?> result = redisTemplate.execute(SAVE_CART_SCRIPT,
+                List.of(key(cart.getUserId()), dirtyKey != null ? dirtyKey : key(cart.getUserId())),
+                args.toArray());
+        return toCart(cart.getUserId(), toFieldMap(result));
+    }
+
+    @Override
+    public void deleteById(String userId) {
+        redisTemplate.delete(key(userId));
+    }
+
+    @Override
+    public boolean existsById(String userId) {
+        return Boolean.TRUE.equals(redisTemplate.opsForHash().hasKey(key(userId), LAYOUT_FIELD));
+    }
+
+    public static String key(String userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    public static String productIndexKey(String productId) {
+        return PRODUCT_INDEX_PREFIX + productId;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static RedisScript<List> script(String name) {
+        return RedisScript.of(new ClassPathResource("scripts/cart/" + name), List.class);
+    }
+
+    /**
+     * Script that bumps the cart version, with the shared bumpVersion function prepended to its source.
+     */
+    private static <T> RedisScript<T> versionedScript(String name, Class<T> resultType) {
+        return RedisScript.of(source("bump_version.lua") + "\n" + source(name), resultType);
+    }
+
+    private static String source(String name) {
+        try {
+            return new ClassPathResource("scripts/cart/" + name).getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read cart script " + name, e);
+        }
+    }
+
+    private Map<String, String> fieldsOf(CartCache cart) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(LAYOUT_FIELD, LAYOUT_VERSION);
+        putTotals(fields, cart);
+        for (CartItemCache item : cart.getItems()) {
+            putItem(fields, item);
+        }
+        return fields;
+    }
+
+    private Optional<CartCache> toLoadedCart(String userId, List<?> result) {
+        if (result == null || result.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(toCart(userId, toFieldMap(result)));
+    }
+
+    private static Map<Object, Object> toFieldMap(List<?> flat) {
+        Map<Object, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            fields.put(flat.get(i), flat.get(i + 1));
+        }
+        return fields;
+    }
+
+    private void putTotals(Map<String, String> fields, CartCache cart) {
+        fields.put(TOTAL_PRICE_FIELD, Long.toString(MoneyUtils.toMinorUnits(cart.getTotalPrice())));
+        fields.put(TOTAL_ITEMS_FIELD, Integer.toString(cart.getTotalItems()));
+        if (cart.getVersion() != null) {
+            fields.put(VERSION_FIELD, Long.toString(cart.getVersion()));
+        }
+    }
+
+    private void putItem(Map<String, String> fields, CartItemCache item) {
+        fields.put(QUANTITY_PREFIX + item.getProductId(), Integer.toString(item.getQuantity()));
+        fields.put(ITEM_PREFIX + item.getProductId(), writeItem(item));
+    }
+
+    private String writeItem(CartItemCache item) {
+        try {
+            return objectMapper.writeValueAsString(new ItemFields(
+                    item.getProductName(),
+                    MoneyUtils.toMinorUnits(item.getPrice()),
+                    item.getImageUrl(),
+                    item.getAddedAt()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode cart item " + item.getProductId(), e);
+        }
+    }
+
+    private CartCache toCart(String userId, Map<Object, Object> fields) {
+        List<CartItemCache> items = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : fields.entrySet()) {
+            String field = (String) entry.getKey();
+            if (!field.startsWith(ITEM_PREFIX)) {
+                continue;
+            }
+            String productId = field.substring(ITEM_PREFIX.length());
+            Object quantity = fields.get(QUANTITY_PREFIX + productId);
+            if (quantity == null) {
+                continue;
+            }
+            items.add(readItem(productId, (String) entry.getValue(), Integer.parseInt((String) quantity)));
+        }
+        items.sort(Comparator.comparing(CartItemCache::getAddedAt, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        return CartCache.builder()
+                .userId(userId)
+                .items(items)
+                .totalPrice(MoneyUtils.fromMinorUnits(Long.parseLong((String) fields.getOrDefault(TOTAL_PRICE_FIELD, "0"))))
+                .totalItems(Integer.parseInt((String) fields.getOrDefault(TOTAL_ITEMS_FIELD, "0")))
+                .version(Long.parseLong((String) fields.getOrDefault(VERSION_FIELD, "0")))
+                .build();
+    }
+
+    private CartItemCache readItem(String productId, String json, int quantity) {
+        try {
+            ItemFields itemFields = objectMapper.readValue(json, ItemFields.class);
+            return CartItemCache.builder()
+                    .productId(productId)
+                    .productName(itemFields.productName())
+                    .price(MoneyUtils.fromMinorUnits(itemFields.price()))
+                    .quantity(quantity)
+                    .imageUrl(itemFields.imageUrl())
+                    .addedAt(itemFields.addedAt())
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to decode cart item " + productId, e);
+        }
+    }
+
+    private record ItemFields(String productName, long price, String imageUrl, Long addedAt) {
+    }
+}
@@ -0,0 +1,369 @@
+package com.nnson128.cart_service.repository;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItem;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.utils.CartVersions;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Carts in a single {@code carts} row with the line items in the {@code items_json} column,
+ * so a mutation is one locking read and one upsert with no child rows to diff.
+ * <p>
+ * Carts written by the relational layout have no {@code items_json} yet. They are read from
+ * {@code cart_items} and converted on their next write or by {@link #migrate}; their old
+ * {@code cart_items} rows are ignored from then on and removed by {@link #migrate}.
+ */
+@Slf4j
+@Repository
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(prefix = "cart.persistence", name = "layout", havingValue = "json")
+@RequiredArgsConstructor
+public class JsonCartStore implements CartStore {
+
+    static final String ITEMS_COLUMN = "items_json";
+
+    private static final TypeReference<List<JsonLine>> LINES = new TypeReference<>() {
+    };
+
+    private static final String ADD_ITEMS_COLUMN =
+            "ALTER TABLE carts ADD COLUMN items_json JSON NULL";
+    private static final String ADD_PRODUCT_INDEX =
+            "CREATE INDEX idx_carts_items_product_id ON carts ((CAST(items_json->'$[*].productId' AS CHAR(64) ARRAY)))";
+
+    private static final String FIND_CART =
+            "SELECT user_id, total_price, version, items_json, created_at, updated_at FROM carts WHERE user_id = ?";
+    private static final String FIND_CART_FOR_UPDATE = FIND_CART + " FOR UPDATE";
+    private static final String FIND_LEGACY_ITEMS =
+            "SELECT user_id, product_id, product_name, price, quantity, image_url, created_at FROM cart_items "
+                    + "WHERE user_id IN (%s) ORDER BY id";
+    private static final String UPSERT_CART =
+            "INSERT INTO carts (user_id, total_price, version, items_json, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE total_price = VALUES(total_price), version = VALUES(version), "
+                    + "items_json = VALUES(items_json), updated_at = VALUES(updated_at)";
+    private static final String REPRICE_CART =
+            "UPDATE carts SET total_price = ?, version = ?, items_json = ? WHERE user_id = ?";
+    private static final String DELETE_ITEMS =
+            "DELETE FROM cart_items WHERE user_id = ?";
+    private static final String DELETE_CART =
+            "DELETE FROM carts WHERE user_id = ?";
+
+    private static final String FIND_USERS_BY_PRODUCT =
+            "SELECT user_id FROM carts WHERE ? MEMBER OF (items_json->'$[*].productId') "
+                    + "UNION SELECT i.user_id FROM cart_items i JOIN carts c ON c.user_id = i.user_id "
+                    + "WHERE i.product_id = ? AND c.items_json IS NULL";
+
+    private static final String FIND_UNMIGRATED =
+            "SELECT user_id FROM carts WHERE items_json IS NULL AND user_id > ? ORDER BY user_id LIMIT ?";
+    private static final String FIND_MIGRATED_WITH_LEGACY_ITEMS =
+            "SELECT DISTINCT i.user_id FROM cart_items i JOIN carts c ON c.user_id = i.user_id "
+                    + "WHERE c.items_json IS NOT NULL LIMIT ?";
+    private static final String SET_ITEMS_IF_UNMIGRATED =
+            "UPDATE carts SET items_json = ? WHERE user_id = ? AND items_json IS NULL";
+    private static final String DELETE_LEGACY_ITEMS =
+            "DELETE FROM cart_items WHERE user_id IN "
+                    + "(SELECT user_id FROM carts WHERE user_id IN (%s) AND items_json IS NOT NULL)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Add the items_json column and its product index on first start, after Hibernate created the tables
+     */
+    @PostConstruct
+    void init() {
+        Boolean present = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet columns = connection.getMetaData()
+                    .getColumns(connection.getCatalog(), null, "carts", ITEMS_COLUMN)) {
+                return columns.next();
+            }
+        });
+        if (!Boolean.TRUE.equals(present)) {
+            log.info("Adding {} column and product index to carts", ITEMS_COLUMN);
+            jdbcTemplate.execute(ADD_ITEMS_COLUMN);
+            jdbcTemplate.execute(ADD_PRODUCT_INDEX);
+        }
+    }
+
+    @Override
+    public Optional<Cart> findById(String userId) {
+        return find(FIND_CART, userId);
+    }
+
+    /**
+     * Locks the cart row until the surrounding transaction ends
+     */
+    @Override
+    public Optional<Cart> findByIdForUpdate(String userId) {
+        return find(FIND_CART_FOR_UPDATE, userId);
+    }
+
+    /**
+     * Nothing is written until {@link #save}
+     */
+    @Override
+    public Cart create(String userId) {
+        return Cart.builder()
+                .userId(userId)
+                .items(new ArrayList<>())
+                .totalPrice(BigDecimal.ZERO)
+                .build();
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        long now = System.currentTimeMillis();
+        if (cart.getCreatedAt() == null) {
+            cart.setCreatedAt(now);
+        }
+        cart.setUpdatedAt(now);
+        jdbcTemplate.update(UPSERT_CART, cart.getUserId(), cart.getTotalPrice(), cart.getVersion(),
+                write(lines(cart, now)), cart.getCreatedAt(), cart.getUpdatedAt());
+        return cart;
+    }
+
+    private static List<JsonLine> lines(Cart cart, long now) {
+        List<JsonLine> lines = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            if (item.getCreatedAt() == null) {
+                item.setCreatedAt(now);
+            }
+            lines.add(new JsonLine(item.getProductId(), item.getProductName(), item.getPrice(),
+                    item.getQuantity(), item.getImageUrl(), item.getCreatedAt()));
+        }
+        return lines;
+    }
+
+    @Override
+    public void deleteById(String userId) {
+        jdbcTemplate.update(DELETE_ITEMS, userId);
+        jdbcTemplate.update(DELETE_CART, userId);
+    }
+
+    @Override
+    @Transactional
+    public void saveAll(Collection<CartCache> carts) {
+        long now = System.currentTimeMillis();
+        List<Object[]> emptyCarts = new ArrayList<>();
+        List<Object[]> cartRows = new ArrayList<>();
+
+        for (CartCache cart : carts) {
+            if (cart.getItems().isEmpty()) {
+                emptyCarts.add(new Object[]{cart.getUserId()});
+                continue;
+            }
+            List<JsonLine> lines = new ArrayList<>(cart.getItems().size());
+            for (CartItemCache item : cart.getItems()) {
+                lines.add(new JsonLine(item.getProductId(), item.getProductName(), item.getPrice(),
+                        item.getQuantity(), item.getImageUrl(), item.getAddedAt() != null ? item.getAddedAt() : now));
+            }
+            cartRows.add(new Object[]{cart.getUserId(), cart.getTotalPrice(), cart.getVersion(), write(lines), now, now});
+        }
+
+        if (!emptyCarts.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_ITEMS, emptyCarts);
+            jdbcTemplate.batchUpdate(DELETE_CART, emptyCarts);
+        }
+        if (!cartRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_CART, cartRows);
+        }
+    }
+
+    /**
+     * Uses idx_carts_items_product_id, plus idx_cart_items_product_id for carts not converted yet
+     */
+    @Override
+    public List<String> findUserIdsByProductId(String productId) {
+        return jdbcTemplate.queryForList(FIND_USERS_BY_PRODUCT, String.class, productId, productId);
+    }
+
+    /**
+     * JSON lines cannot be updated set-based, so each affected cart is rewritten in its own short transaction
+     */
+    @Override
+    public int repriceProduct(String productId, String productName, BigDecimal price, String imageUrl) {
+        int lines = 0;
+        for (String userId : findUserIdsByProductId(productId)) {
+            Integer repriced = transactionTemplate.execute(status -> findByIdForUpdate(userId)
+                    .map(cart -> repriceCart(cart, productId, productName, price, imageUrl))
+                    .orElse(0));
+            lines += repriced != null ? repriced : 0;
+        }
+        return lines;
+    }
+
+    private int repriceCart(Cart cart, String productId, String productName, BigDecimal price, String imageUrl) {
+        int lines = 0;
+        BigDecimal total = cart.getTotalPrice() != null ? cart.getTotalPrice() : BigDecimal.ZERO;
+        for (CartItem item : cart.getItems()) {
+            if (!item.getProductId().equals(productId)) {
+                continue;
+            }
+            BigDecimal oldPrice = item.getPrice() != null ? item.getPrice() : BigDecimal.ZERO;
+            total = total.add(price.subtract(oldPrice).multiply(BigDecimal.valueOf(item.getQuantity())));
+            item.setProductName(productName);
+            item.setPrice(price);
+            item.setImageUrl(imageUrl);
+            lines++;
+        }
+        if (lines > 0) {
+            cart.setTotalPrice(total);
+            cart.setVersion(CartVersions.next(cart.getVersion()));
+            // Not cart activity, so updated_at stays as it is for the purge
+            jdbcTemplate.update(REPRICE_CART, total, cart.getVersion(), write(lines(cart, System.currentTimeMillis())),
+                    cart.getUserId());
+        }
+        return lines;
+    }
+
+    /**
+     * One keyset page of carts that still keep their lines in cart_items, ordered by user_id
+     */
+    public List<String> findUnmigrated(String afterUserId, int limit) {
+        return jdbcTemplate.queryForList(FIND_UNMIGRATED, String.class, afterUserId, limit);
+    }
+
+    /**
+     * Converted carts whose old cart_items rows are still there
+     */
+    public List<String> findMigratedWithLegacyItems(int limit) {
+        return jdbcTemplate.queryForList(FIND_MIGRATED_WITH_LEGACY_ITEMS, String.class, limit);
+    }
+
+    /**
+     * Copy the cart_items rows of the given carts into items_json and delete them, in one transaction.
+     * Carts written in the meantime keep what they have. Returns the number of carts converted.
+     */
+    @Transactional
+    public int migrate(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<JsonLine>> linesByUser = new LinkedHashMap<>();
+        userIds.forEach(userId -> linesByUser.put(userId, new ArrayList<>()));
+        jdbcTemplate.query(String.format(FIND_LEGACY_ITEMS, placeholders(userIds.size())),
+                (RowCallbackHandler) rs -> linesByUser.get(rs.getString("user_id")).add(readLegacyLine(rs)),
+                userIds.toArray());
+
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        linesByUser.forEach((userId, lines) -> rows.add(new Object[]{write(lines), userId}));
+        int converted = 0;
+        for (int count : jdbcTemplate.batchUpdate(SET_ITEMS_IF_UNMIGRATED, rows)) {
+            converted += Math.max(count, 0);
+        }
+        jdbcTemplate.update(String.format(DELETE_LEGACY_ITEMS, placeholders(userIds.size())), userIds.toArray());
+        return converted;
+    }
+
+    private Optional<Cart> find(String sql, String userId) {
+        List<Cart> carts = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Cart cart = Cart.builder()
+                    .userId(rs.getString("user_id"))
+                    .totalPrice(rs.getBigDecimal("total_price"))
+                    .version(rs.getObject("version", Long.class))
+                    .createdAt(rs.getObject("created_at", Long.class))
+                    .updatedAt(rs.getObject("updated_at", Long.class))
+                    .build();
+            String itemsJson = rs.getString(ITEMS_COLUMN);
+            cart.setItems(itemsJson != null ? toItems(cart, read(itemsJson)) : null);
+            return cart;
+        }, userId);
+        if (carts.isEmpty()) {
+            return Optional.empty();
+        }
+        Cart cart = carts.get(0);
+        if (cart.getItems() == null) {
+            // Not converted yet: the lines are still in cart_items
+            List<JsonLine> lines = jdbcTemplate.query(String.format(FIND_LEGACY_ITEMS, "?"),
+                    (rs, rowNum) -> readLegacyLine(rs), userId);
+            cart.setItems(toItems(cart, lines));
+        }
+        return Optional.of(cart);
+    }
+
+    private static List<CartItem> toItems(Cart cart, List<JsonLine> lines) {
+        List<CartItem> items = new ArrayList<>(lines.size());
+        for (JsonLine line : lines) {
+            items.add(CartItem.builder()
+                    .cart(cart)
+                    .productId(line.productId())
+                    .productName(line.productName())
+                    .price(line.price())
+                    .quantity(line.quantity())
+                    .imageUrl(line.imageUrl())
+                    .createdAt(line.addedAt())
+                    .build());
+        }
+        return items;
+    }
+
+    private static JsonLine readLegacyLine(ResultSet rs) throws SQLException {
+        return new JsonLine(
+                rs.getString("product_id"),
+                rs.getString("product_name"),
+                rs.getBigDecimal("price"),
+                rs.getObject("quantity", Integer.class),
+                rs.getString("image_url"),
+                rs.getObject("created_at", Long.class));
+    }
+
+    private String write(List<JsonLine> lines) {
+        try {
+            return objectMapper.writeValueAsString(lines);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cart items", e);
+        }
+    }
+
+    private List<JsonLine> read(String itemsJson) {
+        try {
+            return objectMapper.readValue(itemsJson, LINES);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read cart items", e);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * One cart line as stored in items_json. Prices are strings so their scale survives the JSON column.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record JsonLine(String productId,
+                    String productName,
+                    @JsonFormat(shape = JsonFormat.Shape.STRING) BigDecimal price,
+                    Integer quantity,
+                    String imageUrl,
+                    Long addedAt) {
+    }
+}
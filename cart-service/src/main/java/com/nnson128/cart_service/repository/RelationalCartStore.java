@@ -0,0 +1,72 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Carts in {@code carts} with one {@code cart_items} row per line, mapped through JPA.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "cart.persistence", name = "layout", havingValue = "relational", matchIfMissing = true)
+@RequiredArgsConstructor
+public class RelationalCartStore implements CartStore {
+
+    private final CartJpaRepository cartJpaRepository;
+    private final CartJdbcRepository cartJdbcRepository;
+
+    @Override
+    public Optional<Cart> findById(String userId) {
+        return cartJpaRepository.findById(userId);
+    }
+
+    @Override
+    public Optional<Cart> findByIdForUpdate(String userId) {
+        return cartJpaRepository.findByIdForUpdate(userId);
+    }
+
+    /**
+     * The cart row is inserted right away so that new lines can reference it
+     */
+    @Override
+    public Cart create(String userId) {
+        return cartJpaRepository.save(Cart.builder()
+                .userId(userId)
+                .items(new ArrayList<>())
+                .totalPrice(BigDecimal.ZERO)
+                .build());
+    }
+
+    @Override
+    public Cart save(Cart cart) {
+        return cartJpaRepository.save(cart);
+    }
+
+    @Override
+    public void deleteById(String userId) {
+        cartJpaRepository.deleteById(userId);
+    }
+
+    @Override
+    public void saveAll(Collection<CartCache> carts) {
+        cartJdbcRepository.saveAll(carts);
+    }
+
+    @Override
+    public List<String> findUserIdsByProductId(String productId) {
+        return cartJdbcRepository.findUserIdsByProductId(productId);
+    }
+
+    @Override
+    public int repriceProduct(String productId, String productName, BigDecimal price, String imageUrl) {
+        return cartJdbcRepository.repriceProduct(productId, productName, price, imageUrl);
+    }
+}
@@ -1,7 +1,7 @@
 package com.nnson128.cart_service.service;
 
 import com.nnson128.cart_service.model.CartCache;
-import com.nnson128.cart_service.repository.CartCacheRepository;
+import com.nnson128.cart_service.repository.CartCacheStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,16 +13,24 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class CacheService {
 
-    private final CartCacheRepository cartCacheRepository;
+    private final CartCacheStore cartCacheStore;
+    private final CartNearCache nearCache;
 
-    private static final long CACHE_TTL = 7 * 24 * 60 * 60; // 7 days in seconds
+    public static final long CACHE_TTL = 7 * 24 * 60 * 60; // 7 days in seconds
 
     /**
      * Get cart from cache
      */
     public Optional<CartCache> getFromCache(String userId) {
+        CartCache nearCart = nearCache.get(userId);
+        if (nearCart != null) {
+            return Optional.of(nearCart);
+        }
         try {
-            return cartCacheRepository.findByUserId(userId);
+            long stamp = nearCache.stamp(userId);
+            Optional<CartCache> cart = cartCacheStore.findByUserId(userId);
+            cart.ifPresent(c -> nearCache.put(c, stamp));
+            return cart;
         } catch (Exception e) {
             log.warn("Failed to get cart from cache for userId: {}", userId, e);
             return Optional.empty();
@@ -34,13 +42,43 @@ public class CacheService {
      */
     public void saveToCache(CartCache cart) {
         try {
-            if (cart.getTtl() == null) {
-                cart.setTtl(CACHE_TTL);
-            }
-            cartCacheRepository.save(cart);
+            applyDefaultTtl(cart);
+            cartCacheStore.save(cart);
             log.debug("Cart saved to cache for userId: {}", cart.getUserId());
         } catch (Exception e) {
             log.warn("Failed to save cart to cache for userId: {}", cart.getUserId(), e);
+        } finally {
+            nearCache.invalidate(cart.getUserId());
+        }
+    }
+
+    /**
+     * Save a single changed item (and the cart totals) to cache
+     */
+    public void saveItemToCache(CartCache cart, String productId) {
+        try {
+            applyDefaultTtl(cart);
+            cartCacheStore.saveItem(cart, productId);
+            log.debug("Cart item {} saved to cache for userId: {}", productId, cart.getUserId());
+        } catch (Exception e) {
+            log.warn("Failed to save cart item to cache for userId: {}", cart.getUserId(), e);
+        } finally {
+            nearCache.invalidate(cart.getUserId());
+        }
+    }
+
+    /**
+     * Remove a single item (and write the cart totals) in cache
+     */
+    public void removeItemFromCache(CartCache cart, String productId) {
+        try {
+            applyDefaultTtl(cart);
+            cartCacheStore.removeItem(cart, productId);
+            log.debug("Cart item {} removed from cache for userId: {}", productId, cart.getUserId());
+        } catch (Exception e) {
+            log.warn("Failed to remove cart item from cache for userId: {}", cart.getUserId(), e);
+        } finally {
+            nearCache.invalidate(cart.getUserId());
         }
     }
 
@@ -49,10 +87,12 @@ public class CacheService {
      */
     public void deleteFromCache(String userId) {
         try {
-            cartCacheRepository.deleteById(userId);
+            cartCacheStore.deleteById(userId);
             log.debug("Cart deleted from cache for userId: {}", userId);
         } catch (Exception e) {
             log.warn("Failed to delete cart from cache for userId: {}", userId, e);
+        } finally {
+            nearCache.invalidate(userId);
         }
     }
 
@@ -61,10 +101,16 @@ public class CacheService {
      */
     public boolean existsInCache(String userId) {
         try {
-            return cartCacheRepository.existsById(userId);
+            return cartCacheStore.existsById(userId);
         } catch (Exception e) {
             log.warn("Failed to check cache existence for userId: {}", userId, e);
             return false;
         }
     }
+
+    private void applyDefaultTtl(CartCache cart) {
+        if (cart.getTtl() == null) {
+            cart.setTtl(CACHE_TTL);
+        }
+    }
 }
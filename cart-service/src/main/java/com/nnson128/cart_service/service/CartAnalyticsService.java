@@ -0,0 +1,244 @@
+package com.nnson128.cart_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.dto.AbandonedCartStatsDTO;
+import com.nnson128.cart_service.dto.CartDTO;
+import com.nnson128.cart_service.dto.CartItemDTO;
+import com.nnson128.cart_service.utils.MoneyUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Abandoned-cart aggregates kept incrementally in Redis, so reports never scan carts.
+ * Every cart change records the user's last activity time and a small snapshot of the cart
+ * (one zset member and one hash field per open cart). A sweep picks carts idle for
+ * {@code cart.analytics.abandon-after-hours} and adds each one, exactly once, to the counters
+ * of the day of its last change: totals, a HyperLogLog of users and per-product value and units.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CartAnalyticsService {
+
+    public static final String ACTIVITY_KEY = "cart:activity";
+    public static final String SNAPSHOT_KEY = "cart:activity:snapshot";
+    public static final String STATS_PREFIX = "cart:stats:";
+
+    private static final RedisScript<Long> TOUCH_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/analytics/touch.lua"), Long.class);
+    private static final RedisScript<Long> ABANDON_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/analytics/abandon.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${cart.analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.analytics.abandon-after-hours:24}")
+    private long abandonAfterHours;
+
+    @Value("${cart.analytics.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    @Value("${cart.analytics.retention-days:400}")
+    private long retentionDays;
+
+    @Value("${cart.analytics.max-range-days:92}")
+    private int maxRangeDays;
+
+    @Value("${cart.analytics.zone:Asia/Ho_Chi_Minh}")
+    private ZoneId zone;
+
+    /**
+     * Record a cart change. An empty or missing cart closes the user's open cart without counting it.
+     * Failures are logged only, analytics never fail a cart change.
+     */
+    public void recordActivity(String userId, CartDTO cart) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String snapshot = cart == null || cart.getItems() == null || cart.getItems().isEmpty() ? "" : snapshot(cart);
+            redisTemplate.execute(TOUCH_SCRIPT,
+                    List.of(ACTIVITY_KEY, SNAPSHOT_KEY, dayKey(LocalDate.now(zone)) + ":active"),
+                    userId, snapshot, String.valueOf(retentionSeconds()));
+        } catch (Exception e) {
+            log.warn("Failed to record cart activity for userId: {}", userId, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.analytics.sweep-interval-ms:60000}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /**
+     * Count every cart idle for longer than the abandon horizon. Safe to run on several instances at once.
+     * Returns the number of carts counted by this call.
+     */
+    public int sweep() {
+        long cutoff = System.currentTimeMillis() - Duration.ofHours(abandonAfterHours).toMillis();
+        int abandoned = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<TypedTuple<String>> idle = redisTemplate.opsForZSet()
+                        .rangeByScoreWithScores(ACTIVITY_KEY, Double.NEGATIVE_INFINITY, cutoff, 0, sweepBatchSize);
+                if (idle == null || idle.isEmpty()) {
+                    break;
+                }
+                int counted = 0;
+                for (TypedTuple<String> cart : idle) {
+                    long lastActivity = cart.getScore().longValue();
+                    String day = dayKey(Instant.ofEpochMilli(lastActivity).atZone(zone).toLocalDate());
+                    Long result = redisTemplate.execute(ABANDON_SCRIPT,
+                            List.of(ACTIVITY_KEY, SNAPSHOT_KEY, day + ":abandoned", day + ":abandoned:users",
+                                    day + ":abandoned:product-value", day + ":abandoned:product-units"),
+                            cart.getValue(), String.valueOf(lastActivity), String.valueOf(retentionSeconds()));
+                    counted += result != null ? result.intValue() : 0;
+                }
+                abandoned += counted;
+                // A batch of carts all changed or taken by another instance meanwhile: leave the rest to the next run
+                if (idle.size() < sweepBatchSize || counted == 0) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Abandoned cart sweep failed after {} carts", abandoned, e);
+        }
+        if (abandoned > 0) {
+            log.info("Counted {} abandoned carts", abandoned);
+        }
+        return abandoned;
+    }
+
+    /**
+     * Abandoned-cart stats per day, with the {@code top} products by abandoned value.
+     * Reads a fixed set of keys per day in one pipeline, whatever the number of carts.
+     */
+    public List<AbandonedCartStatsDTO> getAbandonedStats(LocalDate from, LocalDate to, int top) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new RuntimeException("A valid from/to date range is required");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new RuntimeException("Date range cannot exceed " + maxRangeDays + " days");
+        }
+        if (top < 0 || top > 100) {
+            throw new RuntimeException("top must be between 0 and 100");
+        }
+
+        List<LocalDate> days = from.datesUntil(to.plusDays(1)).toList();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (LocalDate day : days) {
+                String key = dayKey(day);
+                redis.hGetAll(key + ":abandoned");
+                redis.pfCount(key + ":abandoned:users");
+                redis.pfCount(key + ":active");
+                redis.zRevRangeWithScores(key + ":abandoned:product-value", 0, Math.max(top - 1L, 0));
+            }
+            return null;
+        });
+
+        List<AbandonedCartStatsDTO> stats = new ArrayList<>(days.size());
+        Map<LocalDate, List<String>> productsByDay = new LinkedHashMap<>();
+        for (int i = 0; i < days.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> totals = (Map<String, String>) results.get(i * 4);
+            @SuppressWarnings("unchecked")
+            Set<TypedTuple<String>> topValue = (Set<TypedTuple<String>>) results.get(i * 4 + 3);
+
+            List<AbandonedCartStatsDTO.ProductStats> products = new ArrayList<>();
+            if (top > 0 && topValue != null) {
+                for (TypedTuple<String> product : topValue) {
+                    products.add(AbandonedCartStatsDTO.ProductStats.builder()
+                            .productId(product.getValue())
+                            .value(MoneyUtils.fromMinorUnits(product.getScore().longValue()))
+                            .build());
+                }
+            }
+            productsByDay.put(days.get(i), products.stream().map(AbandonedCartStatsDTO.ProductStats::getProductId).toList());
+            stats.add(AbandonedCartStatsDTO.builder()
+                    .date(days.get(i))
+                    .abandonedCarts(number(totals.get("carts")))
+                    .abandonedUsers((Long) results.get(i * 4 + 1))
+                    .activeUsers((Long) results.get(i * 4 + 2))
+                    .abandonedValue(MoneyUtils.fromMinorUnits(number(totals.get("value"))))
+                    .abandonedUnits(number(totals.get("units")))
+                    .topProducts(products)
+                    .build());
+        }
+
+        fillUnits(stats, productsByDay);
+        return stats;
+    }
+
+    /**
+     * Units of the top products, read in a second pipeline once they are known
+     */
+    private void fillUnits(List<AbandonedCartStatsDTO> stats, Map<LocalDate, List<String>> productsByDay) {
+        if (productsByDay.values().stream().allMatch(List::isEmpty)) {
+            return;
+        }
+        List<Object> units = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            productsByDay.forEach((day, productIds) -> productIds.forEach(productId ->
+                    redis.zScore(dayKey(day) + ":abandoned:product-units", productId)));
+            return null;
+        });
+        int index = 0;
+        for (AbandonedCartStatsDTO day : stats) {
+            for (AbandonedCartStatsDTO.ProductStats product : day.getTopProducts()) {
+                Double score = (Double) units.get(index++);
+                product.setUnits(score != null ? score.longValue() : 0L);
+            }
+        }
+    }
+
+    private String snapshot(CartDTO cart) throws Exception {
+        List<Object[]> lines = new ArrayList<>(cart.getItems().size());
+        for (CartItemDTO item : cart.getItems()) {
+            int quantity = item.getQuantity() != null ? item.getQuantity() : 0;
+            BigDecimal price = item.getPrice() != null ? item.getPrice() : BigDecimal.ZERO;
+            lines.add(new Object[]{item.getProductId(), quantity,
+                    MoneyUtils.toMinorUnits(price.multiply(BigDecimal.valueOf(quantity)))});
+        }
+        BigDecimal total = cart.getTotalPrice() != null ? cart.getTotalPrice() : BigDecimal.ZERO;
+        return objectMapper.writeValueAsString(Map.of("v", MoneyUtils.toMinorUnits(total), "l", lines));
+    }
+
+    private long retentionSeconds() {
+        return Duration.ofDays(retentionDays).toSeconds();
+    }
+
+    private static String dayKey(LocalDate day) {
+        return STATS_PREFIX + day;
+    }
+
+    private static long number(String value) {
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+}
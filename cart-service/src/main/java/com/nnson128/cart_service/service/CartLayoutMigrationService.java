@@ -0,0 +1,90 @@
+package com.nnson128.cart_service.service;
+
+import com.nnson128.cart_service.repository.JsonCartStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Moves carts from the relational layout ({@code cart_items} rows) into {@code items_json}
+ * after switching to {@code cart.persistence.layout=json}. Runs in keyset-ordered chunks, each
+ * in its own short transaction, and is safe to run on several instances at once.
+ * Carts not converted yet are still readable, so the service serves traffic while it runs.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "cart.persistence", name = "layout", havingValue = "json")
+@RequiredArgsConstructor
+public class CartLayoutMigrationService {
+
+    private final JsonCartStore jsonCartStore;
+
+    @Value("${cart.persistence.json.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    @Value("${cart.persistence.json.migration-chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${cart.persistence.json.migration-pause-ms:100}")
+    private long pauseMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "cart-layout-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Convert every remaining cart and remove the cart_items rows left behind by converted carts.
+     * Returns the number of carts converted.
+     */
+    public int migrate() {
+        int converted = 0;
+        try {
+            String afterUserId = "";
+            while (!Thread.currentThread().isInterrupted()) {
+                List<String> chunk = jsonCartStore.findUnmigrated(afterUserId, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                afterUserId = chunk.get(chunk.size() - 1);
+                converted += jsonCartStore.migrate(chunk);
+                pause();
+            }
+
+            // Carts converted by a write before this run still have their old rows
+            int cleaned = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<String> chunk = jsonCartStore.findMigratedWithLegacyItems(chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                jsonCartStore.migrate(chunk);
+                cleaned += chunk.size();
+                pause();
+            }
+            log.info("Cart layout migration converted {} carts and cleaned up {} converted carts", converted, cleaned);
+        } catch (Exception e) {
+            log.error("Cart layout migration stopped after {} carts, it resumes on the next start", converted, e);
+        }
+        return converted;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
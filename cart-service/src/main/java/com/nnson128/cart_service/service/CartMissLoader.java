@@ -0,0 +1,93 @@
+package com.nnson128.cart_service.service;
+
+import com.nnson128.cart_service.exception.CartLoadRejectedException;
+import com.nnson128.cart_service.model.CartCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces cache-miss loads: only one load per userId runs at a time and
+ * concurrent callers for the same userId wait for its result.
+ * Loads across all users are capped so a cold Redis cannot exhaust the DB pool.
+ */
+@Slf4j
+@Component
+public class CartMissLoader {
+
+    @Value("${cart.cache.miss-load.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${cart.cache.miss-load.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<CartCache>>> inFlight = new ConcurrentHashMap<>();
+
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Run {@code loader} for userId, or wait for the load already in flight for it
+     */
+    public Optional<CartCache> load(String userId, Supplier<Optional<CartCache>> loader) {
+        CompletableFuture<Optional<CartCache>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<CartCache>> existing = inFlight.putIfAbsent(userId, load);
+        if (existing != null) {
+            log.debug("Waiting for in-flight cart load for userId: {}", userId);
+            return await(existing);
+        }
+
+        try {
+            load.complete(loadWithPermit(userId, loader));
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(userId, load);
+        }
+        return load.join();
+    }
+
+    private Optional<CartCache> loadWithPermit(String userId, Supplier<Optional<CartCache>> loader) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CartLoadRejectedException("Interrupted while waiting to load cart");
+        }
+        if (!acquired) {
+            log.warn("Too many concurrent cart loads, rejecting load for userId: {}", userId);
+            throw new CartLoadRejectedException("Cart service is busy, please retry");
+        }
+        try {
+            return loader.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Optional<CartCache> await(CompletableFuture<Optional<CartCache>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.nnson128.cart_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nnson128.cart_service.model.CartCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache in front of the Redis cart store.
+ * Any replica that changes a cart drops its local copy and publishes the userId on {@code cart:invalidate},
+ * tagged with its instance id, and every other replica drops its copy too.
+ * Hit/miss/eviction counts are published as {@code cache.*} metrics with {@code cache=cart.near}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CartNearCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cart:invalidate";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cart.cache.near.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.cache.near.maximum-size:2000}")
+    private long maximumSize;
+
+    @Value("${cart.cache.near.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    // Invalidation stamps outlive any Redis read they guard
+    private static final Duration STAMP_TTL = Duration.ofSeconds(60);
+    private static final String SENDER_SEPARATOR = "|";
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Last invalidation per recently changed cart, so a Redis read that raced with a change to that cart is not cached
+     */
+    private Cache<String, Long> invalidatedAt;
+
+    private Cache<String, CartCache> cache;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        invalidatedAt = Caffeine.newBuilder()
+                .expireAfterWrite(STAMP_TTL)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cart.near");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        log.info("Cart near cache enabled, maximum size {}, ttl {}s", maximumSize, ttlSeconds);
+    }
+
+    public CartCache get(String userId) {
+        return enabled ? cache.getIfPresent(userId) : null;
+    }
+
+    /**
+     * Current invalidation stamp of the cart, taken before reading it from Redis
+     */
+    public long stamp(String userId) {
+        if (!enabled) {
+            return 0L;
+        }
+        Long stamp = invalidatedAt.getIfPresent(userId);
+        return stamp != null ? stamp : 0L;
+    }
+
+    /**
+     * Cache a cart read from Redis unless it was invalidated since {@code stamp}
+     */
+    public void put(CartCache cart, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        // compute runs under the entry's lock, so an invalidation cannot slip in between the check and the put
+        cache.asMap().compute(cart.getUserId(), (userId, cached) -> stamp(userId) == stamp ? cart : cached);
+    }
+
+    /**
+     * Drop the cart here and on every other replica
+     */
+    public void invalidate(String userId) {
+        if (!enabled) {
+            return;
+        }
+        evict(userId);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + SENDER_SEPARATOR + userId);
+        } catch (Exception e) {
+            log.warn("Failed to publish cart invalidation for userId: {}", userId, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(SENDER_SEPARATOR);
+        if (separator < 0) {
+            evict(body);
+        } else if (!body.substring(0, separator).equals(instanceId)) {
+            evict(body.substring(separator + 1));
+        }
+    }
+
+    private void evict(String userId) {
+        cache.asMap().compute(userId, (id, cached) -> {
+            invalidatedAt.put(id, invalidations.incrementAndGet());
+            return null;
+        });
+    }
+}
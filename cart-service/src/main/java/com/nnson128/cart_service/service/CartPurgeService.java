@@ -0,0 +1,160 @@
+package com.nnson128.cart_service.service;
+
+import com.nnson128.cart_service.repository.CartJdbcRepository;
+import com.nnson128.cart_service.repository.CartJdbcRepository.PurgeCandidate;
+import com.nnson128.cart_service.repository.CartJdbcRepository.PurgeResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Deletes carts not updated within {@code cart.purge.horizon-days}.
+ * Works through keyset-ordered chunks, each deleted in its own short transaction,
+ * with a pause between chunks so the purge never holds locks for long.
+ * Exports {@code cart.purge.carts}, {@code cart.purge.items} and {@code cart.purge.duration}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CartPurgeService {
+
+    private static final String LOCK_KEY = "cart:purge:lock";
+
+    private final CartJdbcRepository cartJdbcRepository;
+    private final CacheService cacheService;
+    private final CartWriteBehindService cartWriteBehindService;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cart.purge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.purge.horizon-days:30}")
+    private long horizonDays;
+
+    @Value("${cart.purge.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${cart.purge.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${cart.purge.max-duration-ms:600000}")
+    private long maxDurationMs;
+
+    private Counter cartsDeleted;
+    private Counter itemsDeleted;
+    private Timer duration;
+
+    @PostConstruct
+    void init() {
+        cartsDeleted = Counter.builder("cart.purge.carts").description("Carts deleted by the purge job").register(meterRegistry);
+        itemsDeleted = Counter.builder("cart.purge.items").description("Cart items deleted by the purge job").register(meterRegistry);
+        duration = Timer.builder("cart.purge.duration").description("Duration of purge runs").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${cart.purge.cron:0 30 3 * * *}")
+    public void scheduledPurge() {
+        if (enabled) {
+            purge();
+        }
+    }
+
+    /**
+     * Run one purge pass on this instance unless another instance is running one.
+     * Returns the number of carts deleted.
+     */
+    public int purge() {
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, token, Duration.ofMillis(maxDurationMs + 60_000)))) {
+            log.debug("Cart purge already running on another instance");
+            return 0;
+        }
+        try {
+            return duration.record(this::purgeChunks);
+        } finally {
+            if (token.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                redisTemplate.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    private int purgeChunks() {
+        long started = System.currentTimeMillis();
+        long cutoff = started - Duration.ofDays(horizonDays).toMillis();
+        long afterUpdatedAt = Long.MIN_VALUE;
+        String afterUserId = "";
+        int carts = 0;
+        int items = 0;
+
+        // Rows without updated_at never match the candidate query, so give them one first
+        int backfilled;
+        while ((backfilled = cartJdbcRepository.backfillUpdatedAt(chunkSize)) > 0) {
+            log.info("Cart purge set updated_at on {} carts without one", backfilled);
+            if (backfilled < chunkSize) {
+                break;
+            }
+            pause();
+        }
+
+        while (System.currentTimeMillis() - started < maxDurationMs && !Thread.currentThread().isInterrupted()) {
+            List<PurgeCandidate> chunk = cartJdbcRepository.findNotUpdatedSince(cutoff, afterUpdatedAt, afterUserId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            PurgeCandidate last = chunk.get(chunk.size() - 1);
+            afterUpdatedAt = last.updatedAt();
+            afterUserId = last.userId();
+
+            PurgeResult result = cartJdbcRepository.deleteNotUpdatedSince(purgeable(chunk), cutoff);
+            if (!cartWriteBehindService.isEnabled()) {
+                result.userIds().forEach(cacheService::deleteFromCache);
+            }
+            carts += result.userIds().size();
+            items += result.items();
+            cartsDeleted.increment(result.userIds().size());
+            itemsDeleted.increment(result.items());
+
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            pause();
+        }
+
+        log.info("Cart purge deleted {} carts and {} items not updated in {} days", carts, items, horizonDays);
+        return carts;
+    }
+
+    /**
+     * With write-behind, carts held in Redis are live even if their stored row is old, so they are kept
+     */
+    private List<String> purgeable(List<PurgeCandidate> chunk) {
+        List<String> userIds = new ArrayList<>(chunk.size());
+        for (PurgeCandidate candidate : chunk) {
+            if (!cartWriteBehindService.isEnabled() || !cacheService.existsInCache(candidate.userId())) {
+                userIds.add(candidate.userId());
+            }
+        }
+        return userIds;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
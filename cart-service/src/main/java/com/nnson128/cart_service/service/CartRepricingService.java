@@ -0,0 +1,98 @@
+package com.nnson128.cart_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.client.ProductClient;
+import com.nnson128.cart_service.dto.ProductChangedEvent;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.repository.CartStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Applies product price/name/image changes to the carts holding the product.
+ * Affected carts are found through the product index of the persistence layout (and, with write-behind,
+ * the {@code cart:product:{productId}} sets), so the cost follows the number of affected
+ * carts, not the number of carts. Totals are shifted by the price difference, not recomputed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CartRepricingService {
+
+    private static final Set<String> SNAPSHOT_EVENTS = Set.of(ProductChangedEvent.DETAILS_CHANGED,
+            ProductChangedEvent.STOCK_CHANGED, ProductChangedEvent.DELETED);
+
+    private final ProductClient productClient;
+    private final CartStore cartStore;
+    private final CartWriteBehindService cartWriteBehindService;
+    private final CacheService cacheService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private Counter repricedCarts;
+
+    @PostConstruct
+    void init() {
+        repricedCarts = Counter.builder("cart.repricing.carts").description("Carts repriced after product changes").register(meterRegistry);
+    }
+
+    @KafkaListener(
+            topics = "${product.events.topic:product.changed}",
+            groupId = "${cart.repricing.group-id:cart-service-repricing}",
+            autoStartup = "${cart.repricing.enabled:true}")
+    public void onProductChanged(String message) throws JsonProcessingException {
+        // Failures propagate to the container error handler (retried, then sent to the dead-letter topic)
+        // so a price change is never dropped
+        ProductChangedEvent event = objectMapper.readValue(message, ProductChangedEvent.class);
+        if (event.getType() != null && SNAPSHOT_EVENTS.contains(event.getType())) {
+            // Carts changed after this event must not be written from the old snapshot
+            productClient.evict(event.getProductId());
+        }
+        if (ProductChangedEvent.DETAILS_CHANGED.equals(event.getType())) {
+            repriceProduct(event);
+        }
+    }
+
+    /**
+     * Apply new product details to every cart holding the product. Returns the number of carts touched.
+     */
+    public int repriceProduct(ProductChangedEvent event) {
+        String productId = event.getProductId();
+        Set<String> userIds = new LinkedHashSet<>(cartStore.findUserIdsByProductId(productId));
+        if (cartWriteBehindService.isEnabled()) {
+            userIds.addAll(cartWriteBehindService.findUserIdsByProductId(productId));
+        }
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+
+        // Stored carts: one set-based update for all lines of the product (per cart with the json layout)
+        int lines = cartStore.repriceProduct(productId, event.getName(), event.getPrice(), event.getImageUrl());
+
+        if (cartWriteBehindService.isEnabled()) {
+            // Carts held in Redis are authoritative and are flushed to DB afterwards
+            CartItemCache details = CartItemCache.builder()
+                    .productId(productId)
+                    .productName(event.getName())
+                    .price(event.getPrice())
+                    .imageUrl(event.getImageUrl())
+                    .build();
+            userIds.forEach(userId -> cartWriteBehindService.repriceItem(userId, details));
+        } else {
+            userIds.forEach(cacheService::deleteFromCache);
+        }
+
+        repricedCarts.increment(userIds.size());
+        log.info("Repriced product {} in {} carts ({} stored lines)", productId, userIds.size(), lines);
+        return userIds.size();
+    }
+}
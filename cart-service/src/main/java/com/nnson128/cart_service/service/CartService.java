@@ -1,24 +1,34 @@
 package com.nnson128.cart_service.service;
 
 import com.nnson128.cart_service.client.ProductClient;
+import com.nnson128.cart_service.dto.AbandonedCartStatsDTO;
 import com.nnson128.cart_service.dto.AddCartItemRequest;
 import com.nnson128.cart_service.dto.CartDTO;
-import com.nnson128.cart_service.dto.CartItemDTO;
+import com.nnson128.cart_service.dto.ConditionalCart;
 import com.nnson128.cart_service.dto.ProductResponseDTO;
 import com.nnson128.cart_service.model.Cart;
 import com.nnson128.cart_service.model.CartItem;
 import com.nnson128.cart_service.model.CartCache;
 import com.nnson128.cart_service.model.CartItemCache;
-import com.nnson128.cart_service.repository.CartJpaRepository;
+import com.nnson128.cart_service.repository.CartStore;
+import com.nnson128.cart_service.utils.CartMapper;
+import com.nnson128.cart_service.utils.CartVersions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,37 +36,61 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartJpaRepository cartJpaRepository;
+    private final CartStore cartStore;
     private final CacheService cacheService;
+    private final CartWriteBehindService cartWriteBehindService;
     private final ProductClient productClient;
+    private final TransactionTemplate transactionTemplate;
+    private final CartMissLoader cartMissLoader;
+    private final StockReservationService stockReservationService;
+    private final CartAnalyticsService cartAnalyticsService;
+
+    @Value("${cart.batch.max-items:100}")
+    private int maxBatchItems;
 
     /**
      * Get cart by userId
      * Process: Check Cache -> If not exists, get from DB -> Save to Cache -> Return to client
      */
     public CartDTO getCart(String userId) {
+        return findCart(userId)
+                .map(CartMapper::toDTO)
+                .orElseGet(() -> emptyCart(userId));
+    }
+
+    /**
+     * Get cart by userId unless the client already holds the current version.
+     * Returns only the ETag when {@code ifNoneMatch} matches it, so the DTO is not built.
+     */
+    public ConditionalCart getCartIfChanged(String userId, String ifNoneMatch) {
+        Optional<CartCache> cart = findCart(userId);
+        String etag = CartVersions.etag(cart.map(CartCache::getVersion).orElse(null));
+        if (matches(ifNoneMatch, etag)) {
+            return new ConditionalCart(etag, null);
+        }
+        return new ConditionalCart(etag, cart.map(CartMapper::toDTO).orElseGet(() -> emptyCart(userId)));
+    }
+
+    /**
+     * Get the cached form of a cart (cache first, then DB), empty when the user has no cart
+     */
+    public Optional<CartCache> findCart(String userId) {
         // Step 1: Check cache first
         Optional<CartCache> cachedCart = cacheService.getFromCache(userId);
         if (cachedCart.isPresent()) {
             log.debug("Cart found in cache for userId: {}", userId);
-            return mapCacheToDTO(cachedCart.get());
+            return cachedCart;
         }
 
-        // Step 2: If not in cache, get from database
-        Optional<Cart> dbCart = cartJpaRepository.findById(userId);
-        if (dbCart.isPresent()) {
-            log.debug("Cart found in database for userId: {}", userId);
-            CartCache cartCache = mapEntityToCache(dbCart.get());
-            
-            // Step 3: Save to cache
-            cacheService.saveToCache(cartCache);
-            
-            // Step 4: Return to client
-            return mapCacheToDTO(cartCache);
+        // Step 2: If not in cache, get from database (one load per userId, others wait for it)
+        Optional<CartCache> loadedCart = cartMissLoader.load(userId, () -> loadCartIntoCache(userId));
+        if (loadedCart.isEmpty()) {
+            log.debug("Cart not found for userId: {}, returning empty cart", userId);
         }
+        return loadedCart;
+    }
 
-        // Return empty cart if not found
-        log.debug("Cart not found for userId: {}, returning empty cart", userId);
+    private CartDTO emptyCart(String userId) {
         return CartDTO.builder()
                 .userId(userId)
                 .items(new ArrayList<>())
@@ -65,58 +99,219 @@ public class CartService {
                 .build();
     }
 
+    /**
+     * If-None-Match holds a list of ETags or {@code *}; weak ETags compare by their value
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Load cart from DB and save it to cache. Runs once per userId for concurrent misses.
+     */
+    private Optional<CartCache> loadCartIntoCache(String userId) {
+        // A load that finished just before this one may already have filled the cache
+        Optional<CartCache> cachedCart = cacheService.getFromCache(userId);
+        if (cachedCart.isPresent()) {
+            return cachedCart;
+        }
+
+        Optional<Cart> dbCart = cartStore.findById(userId);
+        if (dbCart.isEmpty()) {
+            return Optional.empty();
+        }
+        log.debug("Cart found in database for userId: {}", userId);
+        CartCache cartCache = CartMapper.toCache(dbCart.get());
+
+        // Step 3: Save to cache (in write-behind mode a cart changed meanwhile in Redis wins)
+        if (cartWriteBehindService.isEnabled()) {
+            return Optional.of(cartWriteBehindService.seed(cartCache));
+        }
+        cacheService.saveToCache(cartCache);
+        return Optional.of(cartCache);
+    }
+
     /**
      * Add item to cart
      * Process: Get/Create cart from DB -> Add item with product details -> Save to DB -> Update cache -> Return to client
+     * With write-behind enabled the cart is changed in Redis and persisted to DB later
+     * With stock reservations enabled the new line quantity is held first
      */
-    @Transactional
     public CartDTO addItemToCart(String userId, AddCartItemRequest request) {
         log.info("Adding item to cart for userId: {} with product: {}", userId, request.getProductId());
 
-        // Get or create cart from database
-        Cart cart = cartJpaRepository.findById(userId)
-                .orElseGet(() -> {
-                    Cart newCart = Cart.builder()
-                            .userId(userId)
-                            .items(new ArrayList<>())
-                            .totalPrice(BigDecimal.ZERO)
-                            .build();
-                    return cartJpaRepository.save(newCart);
-                });
-
         // Load product details from Product Service
-        ProductResponseDTO product = null;
-        try {
-            product = productClient.getProductById(request.getProductId());
-            if (product == null) {
-                log.warn("Product not found from Product Service for productId: {}", request.getProductId());
+        ProductResponseDTO product = loadProduct(request.getProductId());
+
+        return recordActivity(userId, withStockHolds(userId,
+                current -> Map.of(request.getProductId(),
+                        current.getOrDefault(request.getProductId(), 0) + request.getQuantity()),
+                product != null ? Map.of(request.getProductId(), product) : Map.of(),
+                () -> addItem(userId, request, product)));
+    }
+
+    private CartDTO addItem(String userId, AddCartItemRequest request, ProductResponseDTO product) {
+        if (cartWriteBehindService.isEnabled()) {
+            return addItemWriteBehind(userId, request, product);
+        }
+
+        CartCache cartCache = transactionTemplate.execute(status -> {
+            // Get or create cart from database
+            Cart cart = cartStore.findByIdForUpdate(userId)
+                    .orElseGet(() -> cartStore.create(userId));
+
+            applyItem(cart, request.getProductId(), request.getQuantity(), product, false);
+
+            // Bump version and calculate total price
+            cart.setVersion(CartVersions.next(cart.getVersion()));
+            CartMapper.calculateTotalPrice(cart);
+
+            // Save to database
+            Cart savedCart = cartStore.save(cart);
+            log.debug("Cart saved to database for userId: {}", userId);
+            return CartMapper.toCache(savedCart);
+        });
+
+        // Update cache
+        cacheService.saveItemToCache(cartCache, request.getProductId());
+
+        return CartMapper.toDTO(cartCache);
+    }
+
+    /**
+     * Add several items to cart
+     * Process: Bulk load products -> Apply all items in one DB transaction -> One cache write -> Return to client
+     */
+    public CartDTO addItemsToCart(String userId, List<AddCartItemRequest> items) {
+        log.info("Adding {} items to cart for userId: {}", items.size(), userId);
+        return applyItems(userId, items, false);
+    }
+
+    /**
+     * Merge a guest cart into the user's cart.
+     * Lines already in the cart keep the larger quantity, so merging the same guest cart twice changes nothing.
+     */
+    public CartDTO mergeGuestCart(String userId, List<AddCartItemRequest> items) {
+        log.info("Merging guest cart with {} items for userId: {}", items.size(), userId);
+        return applyItems(userId, items, true);
+    }
+
+    private CartDTO applyItems(String userId, List<AddCartItemRequest> items, boolean keepLargerQuantity) {
+        Map<String, Integer> quantities = collectQuantities(items, keepLargerQuantity);
+
+        // Load product details from Product Service in one lookup
+        Map<String, ProductResponseDTO> products = loadProducts(quantities.keySet());
+
+        return recordActivity(userId, withStockHolds(userId,
+                current -> {
+                    Map<String, Integer> lines = new LinkedHashMap<>();
+                    quantities.forEach((productId, quantity) -> {
+                        int held = current.getOrDefault(productId, 0);
+                        lines.put(productId, keepLargerQuantity ? Math.max(held, quantity) : held + quantity);
+                    });
+                    return lines;
+                },
+                products,
+                () -> applyLoadedItems(userId, quantities, products, keepLargerQuantity)));
+    }
+
+    private CartDTO applyLoadedItems(String userId, Map<String, Integer> quantities,
+                                     Map<String, ProductResponseDTO> products, boolean keepLargerQuantity) {
+        if (cartWriteBehindService.isEnabled()) {
+            List<CartItemCache> cacheItems = new ArrayList<>();
+            long addedAt = System.currentTimeMillis();
+            quantities.forEach((productId, quantity) -> {
+                CartItemCache item = newCartItemCache(productId, products.get(productId), addedAt);
+                item.setQuantity(quantity);
+                cacheItems.add(item);
+            });
+            CartCache cart = cartWriteBehindService.addItems(userId, cacheItems, products.keySet(),
+                    keepLargerQuantity, () -> loadCartForWrite(userId));
+            return CartMapper.toDTO(cart);
+        }
+
+        CartCache cartCache = transactionTemplate.execute(status -> {
+            Cart cart = cartStore.findByIdForUpdate(userId)
+                    .orElseGet(() -> cartStore.create(userId));
+
+            quantities.forEach((productId, quantity) ->
+                    applyItem(cart, productId, quantity, products.get(productId), keepLargerQuantity));
+            cart.setVersion(CartVersions.next(cart.getVersion()));
+            CartMapper.calculateTotalPrice(cart);
+
+            Cart savedCart = cartStore.save(cart);
+            log.debug("Cart saved to database with {} applied items for userId: {}", quantities.size(), userId);
+            return CartMapper.toCache(savedCart);
+        });
+
+        // Update cache once for all items
+        cacheService.saveToCache(cartCache);
+
+        return CartMapper.toDTO(cartCache);
+    }
+
+    /**
+     * Validate requested items and fold repeated products into one line
+     */
+    private Map<String, Integer> collectQuantities(List<AddCartItemRequest> items, boolean keepLargerQuantity) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("Items are required");
+        }
+        if (items.size() > maxBatchItems) {
+            throw new RuntimeException("Cannot add more than " + maxBatchItems + " items at once");
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (AddCartItemRequest item : items) {
+            if (item.getProductId() == null || item.getProductId().isBlank()) {
+                throw new RuntimeException("Product ID is required");
             }
-        } catch (Exception e) {
-            log.warn("Failed to fetch product details from Product Service for productId: {}. Will continue with default values.", 
-                request.getProductId(), e);
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new RuntimeException("Quantity must be greater than 0");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), keepLargerQuantity ? Math::max : Integer::sum);
         }
+        return quantities;
+    }
 
+    /**
+     * Add quantity to an existing line (or keep the larger one) and refresh its details, or create a new line
+     */
+    private void applyItem(Cart cart, String productId, int quantity, ProductResponseDTO product,
+                           boolean keepLargerQuantity) {
         // Check if product already exists in cart
         Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(request.getProductId()))
+                .filter(item -> item.getProductId().equals(productId))
                 .findFirst();
 
         if (existingItem.isPresent()) {
             // If product already in cart, just update quantity
-            existingItem.get().setQuantity(existingItem.get().getQuantity() + request.getQuantity());
-            
+            int current = existingItem.get().getQuantity();
+            existingItem.get().setQuantity(keepLargerQuantity ? Math.max(current, quantity) : current + quantity);
+
             // Update product info if available
             if (product != null) {
                 existingItem.get().setProductName(product.getName());
                 existingItem.get().setPrice(product.getPrice());
                 existingItem.get().setImageUrl(product.getImageUrl());
             }
-            log.debug("Updated existing item quantity in cart for productId: {}", request.getProductId());
+            log.debug("Updated existing item quantity in cart for productId: {}", productId);
         } else {
             // For new product, create cart item
             CartItem newItem = CartItem.builder()
-                    .productId(request.getProductId())
-                    .quantity(request.getQuantity())
+                    .productId(productId)
+                    .quantity(quantity)
                     .cart(cart)
                     .build();
 
@@ -125,113 +320,145 @@ public class CartService {
                 newItem.setProductName(product.getName());
                 newItem.setPrice(product.getPrice());
                 newItem.setImageUrl(product.getImageUrl());
-                log.debug("Product details loaded from Product Service for productId: {}", request.getProductId());
+                log.debug("Product details loaded from Product Service for productId: {}", productId);
             } else {
                 // Use default values if product not found
-                newItem.setProductName("Product #" + request.getProductId());
+                newItem.setProductName("Product #" + productId);
                 newItem.setPrice(BigDecimal.ZERO);
             }
 
             cart.getItems().add(newItem);
             log.debug("Added new item to cart");
         }
-
-        // Calculate total price
-        calculateTotalPrice(cart);
-
-        // Save to database
-        Cart savedCart = cartJpaRepository.save(cart);
-        log.debug("Cart saved to database for userId: {}", userId);
-
-        // Update cache
-        CartCache cartCache = mapEntityToCache(savedCart);
-        cacheService.saveToCache(cartCache);
-
-        return mapCacheToDTO(cartCache);
     }
 
     /**
      * Update cart item quantity
      * Process: Get cart from DB -> Update item -> Save to DB -> Update cache -> Return to client
      */
-    @Transactional
     public CartDTO updateCartItem(String userId, String productId, Integer quantity) {
         log.info("Updating cart item for userId: {}, productId: {}, quantity: {}", userId, productId, quantity);
 
-        Cart cart = cartJpaRepository.findById(userId)
-                .orElseThrow(() -> {
-                    log.error("Cart not found for userId: {}", userId);
-                    return new RuntimeException("Cart not found");
-                });
+        if (!stockReservationService.isEnabled()) {
+            return recordActivity(userId, updateItem(userId, productId, quantity));
+        }
+        ProductResponseDTO product = loadProduct(productId);
+        return recordActivity(userId, withStockHolds(userId,
+                current -> Map.of(productId, quantity),
+                product != null ? Map.of(productId, product) : Map.of(),
+                () -> updateItem(userId, productId, quantity)));
+    }
 
-        cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst()
-                .ifPresentOrElse(
-                        item -> {
-                            item.setQuantity(quantity);
-                            log.debug("Item quantity updated for productId: {}", productId);
-                        },
-                        () -> {
-                            log.error("Product not found in cart for productId: {}", productId);
-                            throw new RuntimeException("Product not found in cart");
-                        }
-                );
-
-        // Calculate total price
-        calculateTotalPrice(cart);
-
-        // Save to database
-        Cart savedCart = cartJpaRepository.save(cart);
-        log.debug("Cart updated in database for userId: {}", userId);
+    private CartDTO updateItem(String userId, String productId, Integer quantity) {
+        if (cartWriteBehindService.isEnabled()) {
+            return updateCartItemWriteBehind(userId, productId, quantity);
+        }
+
+        CartCache cartCache = transactionTemplate.execute(status -> {
+            Cart cart = cartStore.findByIdForUpdate(userId)
+                    .orElseThrow(() -> {
+                        log.error("Cart not found for userId: {}", userId);
+                        return new RuntimeException("Cart not found");
+                    });
+
+            cart.getItems().stream()
+                    .filter(item -> item.getProductId().equals(productId))
+                    .findFirst()
+                    .ifPresentOrElse(
+                            item -> {
+                                item.setQuantity(quantity);
+                                log.debug("Item quantity updated for productId: {}", productId);
+                            },
+                            () -> {
+                                log.error("Product not found in cart for productId: {}", productId);
+                                throw new RuntimeException("Product not found in cart");
+                            }
+                    );
+
+            // Bump version and calculate total price
+            cart.setVersion(CartVersions.next(cart.getVersion()));
+            CartMapper.calculateTotalPrice(cart);
+
+            // Save to database
+            Cart savedCart = cartStore.save(cart);
+            log.debug("Cart updated in database for userId: {}", userId);
+            return CartMapper.toCache(savedCart);
+        });
 
         // Update cache
-        CartCache cartCache = mapEntityToCache(savedCart);
-        cacheService.saveToCache(cartCache);
+        cacheService.saveItemToCache(cartCache, productId);
 
-        return mapCacheToDTO(cartCache);
+        return CartMapper.toDTO(cartCache);
     }
 
     /**
      * Remove item from cart
      * Process: Get cart from DB -> Remove item -> Save to DB -> Update cache -> Return to client
      */
-    @Transactional
     public CartDTO removeItemFromCart(String userId, String productId) {
         log.info("Removing item from cart for userId: {}, productId: {}", userId, productId);
 
-        Cart cart = cartJpaRepository.findById(userId)
-                .orElseThrow(() -> {
-                    log.error("Cart not found for userId: {}", userId);
-                    return new RuntimeException("Cart not found");
-                });
+        CartDTO cart = removeItem(userId, productId);
+        if (stockReservationService.isEnabled()) {
+            stockReservationService.release(userId, List.of(productId));
+        }
+        return recordActivity(userId, cart);
+    }
+
+    private CartDTO removeItem(String userId, String productId) {
+        if (cartWriteBehindService.isEnabled()) {
+            return removeItemWriteBehind(userId, productId);
+        }
 
-        cart.getItems().removeIf(item -> item.getProductId().equals(productId));
+        CartCache cartCache = transactionTemplate.execute(status -> {
+            Cart cart = cartStore.findByIdForUpdate(userId)
+                    .orElseThrow(() -> {
+                        log.error("Cart not found for userId: {}", userId);
+                        return new RuntimeException("Cart not found");
+                    });
 
-        // Calculate total price
-        calculateTotalPrice(cart);
+            cart.getItems().removeIf(item -> item.getProductId().equals(productId));
 
-        // Save to database
-        Cart savedCart = cartJpaRepository.save(cart);
-        log.debug("Item removed from cart in database for userId: {}", userId);
+            // Bump version and calculate total price
+            cart.setVersion(CartVersions.next(cart.getVersion()));
+            CartMapper.calculateTotalPrice(cart);
+
+            // Save to database
+            Cart savedCart = cartStore.save(cart);
+            log.debug("Item removed from cart in database for userId: {}", userId);
+            return CartMapper.toCache(savedCart);
+        });
 
         // Update cache
-        CartCache cartCache = mapEntityToCache(savedCart);
-        cacheService.saveToCache(cartCache);
+        cacheService.removeItemFromCache(cartCache, productId);
 
-        return mapCacheToDTO(cartCache);
+        return CartMapper.toDTO(cartCache);
     }
 
     /**
      * Clear cart
      * Process: Delete from DB -> Delete from cache
+     * With write-behind enabled an empty cart is written to Redis and the DB rows are deleted on flush
      */
-    @Transactional
     public void clearCart(String userId) {
         log.info("Clearing cart for userId: {}", userId);
 
+        deleteCart(userId);
+        if (stockReservationService.isEnabled()) {
+            stockReservationService.releaseAll(userId);
+        }
+        cartAnalyticsService.recordActivity(userId, null);
+    }
+
+    private void deleteCart(String userId) {
+        if (cartWriteBehindService.isEnabled()) {
+            cartWriteBehindService.replace(emptyCartCache(userId));
+            log.debug("Empty cart written to cache for userId: {}", userId);
+            return;
+        }
+
         // Delete from database
-        cartJpaRepository.deleteById(userId);
+        transactionTemplate.executeWithoutResult(status -> cartStore.deleteById(userId));
         log.debug("Cart deleted from database for userId: {}", userId);
 
         // Delete from cache
@@ -240,59 +467,139 @@ public class CartService {
     }
 
     /**
-     * Calculate total price and items count
+     * Units of each product not held by carts, from the stock reservation holds.
+     * Empty when stock reservations are disabled; products with no known stock level are left out.
      */
-    private void calculateTotalPrice(Cart cart) {
-        BigDecimal total = BigDecimal.ZERO;
-        for (CartItem item : cart.getItems()) {
-            BigDecimal itemTotal = item.getPrice().multiply(new BigDecimal(item.getQuantity()));
-            total = total.add(itemTotal);
+    public Map<String, Integer> getAvailability(Collection<String> productIds) {
+        if (!stockReservationService.isEnabled()) {
+            return Map.of();
         }
-        cart.setTotalPrice(total);
+        return stockReservationService.available(productIds);
     }
 
     /**
-     * Map Cart entity to CartCache
+     * Consume the user's stock holds at checkout. Returns the consumed quantity per product.
      */
-    private CartCache mapEntityToCache(Cart entity) {
-        List<CartItemCache> items = entity.getItems().stream()
-                .map(item -> CartItemCache.builder()
-                        .productId(item.getProductId())
-                        .productName(item.getProductName())
-                        .price(item.getPrice())
-                        .quantity(item.getQuantity())
-                        .imageUrl(item.getImageUrl())
-                        .build())
-                .collect(Collectors.toList());
+    public Map<String, Integer> consumeStockHolds(String userId) {
+        if (!stockReservationService.isEnabled()) {
+            return Map.of();
+        }
+        log.info("Consuming stock holds for userId: {}", userId);
+        return stockReservationService.consume(userId);
+    }
 
-        return CartCache.builder()
-                .userId(entity.getUserId())
-                .items(items)
-                .totalPrice(entity.getTotalPrice())
-                .totalItems(entity.getItems().size())
-                .ttl(7 * 24 * 60 * 60L) // 7 days in seconds
-                .build();
+    /**
+     * Abandoned-cart stats per day from the incremental aggregates
+     */
+    public List<AbandonedCartStatsDTO> getAbandonedCartStats(LocalDate from, LocalDate to, int top) {
+        return cartAnalyticsService.getAbandonedStats(from, to, top);
+    }
+
+    private CartDTO recordActivity(String userId, CartDTO cart) {
+        cartAnalyticsService.recordActivity(userId, cart);
+        return cart;
     }
 
     /**
-     * Map CartCache to CartDTO
+     * Hold stock for the cart lines a change leads to, given the lines currently held,
+     * then run the change and put the previous holds back if it fails
      */
-    private CartDTO mapCacheToDTO(CartCache cache) {
-        List<CartItemDTO> items = cache.getItems().stream()
-                .map(item -> CartItemDTO.builder()
-                        .productId(item.getProductId())
-                        .productName(item.getProductName())
-                        .price(item.getPrice())
-                        .quantity(item.getQuantity())
-                        .imageUrl(item.getImageUrl())
-                        .build())
-                .collect(Collectors.toList());
+    private CartDTO withStockHolds(String userId, Function<Map<String, Integer>, Map<String, Integer>> lines,
+                                   Map<String, ProductResponseDTO> products, Supplier<CartDTO> change) {
+        if (!stockReservationService.isEnabled()) {
+            return change.get();
+        }
+        Map<String, Integer> current = findCart(userId)
+                .map(cart -> cart.getItems().stream()
+                        .collect(Collectors.toMap(CartItemCache::getProductId, CartItemCache::getQuantity, Integer::sum)))
+                .orElse(Map.of());
+        Map<String, Integer> previous = stockReservationService.reserve(userId, lines.apply(current), products);
+        try {
+            return change.get();
+        } catch (RuntimeException e) {
+            stockReservationService.restore(userId, previous);
+            throw e;
+        }
+    }
 
-        return CartDTO.builder()
-                .userId(cache.getUserId())
-                .items(items)
-                .totalPrice(cache.getTotalPrice())
-                .totalItems(cache.getTotalItems())
+    private CartDTO addItemWriteBehind(String userId, AddCartItemRequest request, ProductResponseDTO product) {
+        CartItemCache item = newCartItemCache(request.getProductId(), product, System.currentTimeMillis());
+
+        CartCache cart = cartWriteBehindService.addItem(userId, item, request.getQuantity(), product != null,
+                () -> loadCartForWrite(userId));
+        return CartMapper.toDTO(cart);
+    }
+
+    private CartDTO updateCartItemWriteBehind(String userId, String productId, Integer quantity) {
+        CartCache cart = cartWriteBehindService.updateItem(userId, productId, quantity,
+                () -> loadExistingCartForWrite(userId));
+        return CartMapper.toDTO(cart);
+    }
+
+    private CartDTO removeItemWriteBehind(String userId, String productId) {
+        CartCache cart = cartWriteBehindService.removeItem(userId, productId,
+                () -> loadExistingCartForWrite(userId));
+        return CartMapper.toDTO(cart);
+    }
+
+    /**
+     * Load the persisted cart (or a new empty one) to seed Redis before the first write-behind change
+     */
+    private CartCache loadCartForWrite(String userId) {
+        return cartStore.findById(userId)
+                .map(CartMapper::toCache)
+                .orElseGet(() -> emptyCartCache(userId));
+    }
+
+    private CartCache loadExistingCartForWrite(String userId) {
+        return cartStore.findById(userId)
+                .map(CartMapper::toCache)
+                .orElseThrow(() -> {
+                    log.error("Cart not found for userId: {}", userId);
+                    return new RuntimeException("Cart not found");
+                });
+    }
+
+    private CartItemCache newCartItemCache(String productId, ProductResponseDTO product, long addedAt) {
+        return CartItemCache.builder()
+                .productId(productId)
+                .productName(product != null ? product.getName() : "Product #" + productId)
+                .price(product != null ? product.getPrice() : BigDecimal.ZERO)
+                .imageUrl(product != null ? product.getImageUrl() : null)
+                .addedAt(addedAt)
+                .build();
+    }
+
+    private Map<String, ProductResponseDTO> loadProducts(Collection<String> productIds) {
+        Map<String, ProductResponseDTO> products = productClient.getProductsByIds(productIds);
+        if (products.size() < productIds.size()) {
+            log.warn("Product details not found for {} of {} products, will continue with default values",
+                    productIds.size() - products.size(), productIds.size());
+        }
+        return products;
+    }
+
+    private ProductResponseDTO loadProduct(String productId) {
+        try {
+            ProductResponseDTO product = productClient.getProductById(productId);
+            if (product == null) {
+                log.warn("Product not found from Product Service for productId: {}", productId);
+            }
+            return product;
+        } catch (Exception e) {
+            log.warn("Failed to fetch product details from Product Service for productId: {}. Will continue with default values.", 
+                productId, e);
+            return null;
+        }
+    }
+
+    private CartCache emptyCartCache(String userId) {
+        return CartCache.builder()
+                .userId(userId)
+                .items(new ArrayList<>())
+                .totalPrice(BigDecimal.ZERO)
+                .totalItems(0)
+                .version(CartVersions.next(null))
                 .build();
     }
 }
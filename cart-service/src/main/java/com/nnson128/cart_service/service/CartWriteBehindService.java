@@ -0,0 +1,318 @@
+package com.nnson128.cart_service.service;
+
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.repository.CartCacheStore;
+import com.nnson128.cart_service.repository.CartStore;
+import com.nnson128.cart_service.repository.HashCartCacheStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Redis-first cart persistence. When enabled, the Redis hash is the authoritative
+ * cart and MySQL is updated in the background:
+ * <ol>
+ *     <li>every mutation runs as a Lua script that changes the cart and adds the userId
+ *     to the {@code cart:dirty} set in the same atomic step</li>
+ *     <li>a flush atomically renames {@code cart:dirty} to {@code cart:dirty:flushing}</li>
+ *     <li>flushing members are written to MySQL in JDBC batches and only then removed</li>
+ * </ol>
+ * Both sets live in Redis, so a crash between steps leaves the userIds in place and the
+ * next flush (on any replica) picks them up. A Redis lock keeps one flusher active at a time.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CartWriteBehindService {
+
+    public static final String DIRTY_KEY = "cart:dirty";
+    public static final String FLUSHING_KEY = "cart:dirty:flushing";
+    public static final String LOST_KEY = "cart:dirty:lost";
+    private static final String LOCK_KEY = "cart:dirty:lock";
+
+    private final CartCacheStore cartCacheStore;
+    private final CartStore cartStore;
+    private final StringRedisTemplate redisTemplate;
+    private final CartNearCache nearCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cart.persistence.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cart.persistence.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${cart.persistence.write-behind.lock-timeout-ms:60000}")
+    private long lockTimeoutMs;
+
+    @Value("${cart.persistence.write-behind.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cart-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private HashCartCacheStore hashStore;
+    private Counter lostCarts;
+
+    @PostConstruct
+    void init() {
+        lostCarts = Counter.builder("cart.writebehind.lost").description("Dirty carts gone from Redis before they were written").register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        if (!(cartCacheStore instanceof HashCartCacheStore store)) {
+            throw new IllegalStateException("cart.persistence.write-behind.enabled requires cart.cache.storage-mode=hash");
+        }
+        hashStore = store;
+        log.info("Cart write-behind enabled, batch size {}", batchSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the authoritative cart from Redis
+     */
+    public Optional<CartCache> find(String userId) {
+        return hashStore.findByUserId(userId);
+    }
+
+    /**
+     * Store a cart loaded from DB unless another request stored one first.
+     * Returns the cart as stored in Redis.
+     */
+    public CartCache seed(CartCache cart) {
+        return hashStore.replace(cart, true, CacheService.CACHE_TTL, null);
+    }
+
+    /**
+     * Replace the whole cart in Redis and schedule it for persistence
+     */
+    public CartCache replace(CartCache cart) {
+        CartCache stored = hashStore.replace(cart, false, CacheService.CACHE_TTL, DIRTY_KEY);
+        nearCache.invalidate(cart.getUserId());
+        onWrite();
+        return stored;
+    }
+
+    /**
+     * Atomically add quantity to a line and schedule the cart for persistence.
+     * {@code loader} provides the persisted cart when it is not in Redis yet.
+     */
+    public CartCache addItem(String userId, CartItemCache item, int quantity, boolean replaceDetails,
+                             Supplier<CartCache> loader) {
+        return withLoadedCart(userId, loader, () -> hashStore.addItem(
+                userId, item, quantity, replaceDetails, CacheService.CACHE_TTL, DIRTY_KEY));
+    }
+
+    /**
+     * Atomically apply several lines and schedule the cart for persistence
+     */
+    public CartCache addItems(String userId, List<CartItemCache> items, Set<String> replaceDetails,
+                              boolean keepLargerQuantity, Supplier<CartCache> loader) {
+        return withLoadedCart(userId, loader, () -> hashStore.addItems(
+                userId, items, replaceDetails, keepLargerQuantity, CacheService.CACHE_TTL, DIRTY_KEY));
+    }
+
+    /**
+     * Atomically set the quantity of a line and schedule the cart for persistence
+     */
+    public CartCache updateItem(String userId, String productId, int quantity, Supplier<CartCache> loader) {
+        return withLoadedCart(userId, loader, () -> hashStore.updateItem(
+                userId, productId, quantity, CacheService.CACHE_TTL, DIRTY_KEY));
+    }
+
+    /**
+     * Atomically remove a line and schedule the cart for persistence
+     */
+    public CartCache removeItem(String userId, String productId, Supplier<CartCache> loader) {
+        return withLoadedCart(userId, loader, () -> hashStore.removeItem(
+                userId, productId, CacheService.CACHE_TTL, DIRTY_KEY));
+    }
+
+    /**
+     * Users whose carts got the product through a write-behind change
+     */
+    public Set<String> findUserIdsByProductId(String productId) {
+        return hashStore.findUserIdsByProductId(productId);
+    }
+
+    /**
+     * Apply new product details to the user's line in Redis and schedule the cart for persistence.
+     * Returns false when the cart is not in Redis or does not hold the product.
+     */
+    public boolean repriceItem(String userId, CartItemCache details) {
+        boolean repriced = hashStore.repriceItem(userId, details, DIRTY_KEY);
+        if (repriced) {
+            nearCache.invalidate(userId);
+            onWrite();
+        }
+        return repriced;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.persistence.write-behind.flush-interval-ms:2000}")
+    public void scheduledFlush() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Persist all dirty carts. Returns the number of carts written.
+     */
+    public int flush() {
+        flushLock.lock();
+        String token = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY, token, Duration.ofMillis(lockTimeoutMs)))) {
+                return 0;
+            }
+            try {
+                pendingWrites.set(0);
+                return flushPending();
+            } finally {
+                if (token.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                    redisTemplate.delete(LOCK_KEY);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Cart write-behind flush failed, dirty carts are kept for the next run", e);
+            return 0;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flush everything still dirty before the instance stops
+     */
+    @PreDestroy
+    public void drain() {
+        flushExecutor.shutdown();
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        while (hasPendingCarts()) {
+            if (System.currentTimeMillis() > deadline) {
+                log.warn("Cart write-behind drain timed out, remaining carts stay in {}", DIRTY_KEY);
+                return;
+            }
+            if (flush() == 0) {
+                sleepQuietly();
+            }
+        }
+        log.info("Cart write-behind drained");
+    }
+
+    private int flushPending() {
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(FLUSHING_KEY))) {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(DIRTY_KEY))) {
+                return 0;
+            }
+            redisTemplate.renameIfAbsent(DIRTY_KEY, FLUSHING_KEY);
+        }
+
+        int flushed = 0;
+        while (true) {
+            Set<String> members = redisTemplate.opsForSet().distinctRandomMembers(FLUSHING_KEY, batchSize);
+            if (members == null || members.isEmpty()) {
+                break;
+            }
+            List<String> userIds = new ArrayList<>(members);
+            Map<String, CartCache> carts = hashStore.findAllByUserIds(userIds);
+            cartStore.saveAll(carts.values());
+            if (!carts.isEmpty()) {
+                redisTemplate.opsForSet().remove(FLUSHING_KEY, carts.keySet().toArray());
+            }
+            flushed += carts.size();
+            userIds.removeAll(carts.keySet());
+            if (!userIds.isEmpty()) {
+                markLost(userIds);
+            }
+        }
+        log.debug("Cart write-behind flushed {} carts", flushed);
+        return flushed;
+    }
+
+    /**
+     * Dirty carts whose hash expired or was evicted before it was written: their last changes never reach MySQL.
+     * They are moved to {@code cart:dirty:lost} rather than dropped, so they can be looked into.
+     */
+    private void markLost(List<String> userIds) {
+        for (String userId : userIds) {
+            redisTemplate.opsForSet().move(FLUSHING_KEY, userId, LOST_KEY);
+        }
+        lostCarts.increment(userIds.size());
+        log.warn("Cart write-behind lost {} dirty carts no longer in Redis, moved to {}: {}",
+                userIds.size(), LOST_KEY, userIds);
+    }
+
+    /**
+     * Run a script mutation, seeding Redis from {@code loader} once if the cart is not there yet
+     */
+    private CartCache withLoadedCart(String userId, Supplier<CartCache> loader, Supplier<Optional<CartCache>> mutation) {
+        Optional<CartCache> result = mutation.get();
+        if (result.isEmpty()) {
+            seed(loader.get());
+            result = mutation.get();
+        }
+        nearCache.invalidate(userId);
+        onWrite();
+        return result.orElseThrow(() -> new IllegalStateException("Cart could not be loaded into Redis for userId: " + userId));
+    }
+
+    private void onWrite() {
+        if (pendingWrites.incrementAndGet() >= batchSize
+                && !flushExecutor.isShutdown()
+                && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    private boolean hasPendingCarts() {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(DIRTY_KEY))
+                || Boolean.TRUE.equals(redisTemplate.hasKey(FLUSHING_KEY));
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
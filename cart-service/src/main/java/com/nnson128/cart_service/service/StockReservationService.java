@@ -0,0 +1,215 @@
+package com.nnson128.cart_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.dto.ProductChangedEvent;
+import com.nnson128.cart_service.dto.ProductResponseDTO;
+import com.nnson128.cart_service.exception.InsufficientStockException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Soft stock holds placed by carts. Each product has a Redis hash with its last known stock level,
+ * the sum of live holds and one hold per user, plus a sorted set of hold expiry times.
+ * A cart line holds its quantity for {@code cart.reservation.ttl-seconds}; holds are released when
+ * the line goes away, expire on their own and are consumed at checkout.
+ * Every check or change is one script call, so availability never needs a call to Product Service.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    public static final String HOLD_PREFIX = "stock:hold:";
+    public static final String EXPIRY_PREFIX = "stock:hold:exp:";
+    public static final String USER_PREFIX = "stock:holds:user:";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE_SCRIPT = script("reserve.lua");
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RELEASE_SCRIPT = script("release.lua");
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> AVAILABLE_SCRIPT = script("available.lua");
+    private static final RedisScript<Long> SET_STOCK_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/reservation/set_stock.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${cart.reservation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cart.reservation.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set the user's holds to the given quantities (0 releases), all or nothing.
+     * Holds only grow while the product's known stock level covers them.
+     * Returns the previous holds so a failed cart change can put them back with {@link #restore}.
+     *
+     * @throws InsufficientStockException with the units still available for each product that is short
+     */
+    public Map<String, Integer> reserve(String userId, Map<String, Integer> quantities,
+                                        Map<String, ProductResponseDTO> products) {
+        List<?> result = runReserve(userId, quantities, products, true);
+        if (((Number) result.get(0)).intValue() == 0) {
+            throw new InsufficientStockException(pairs(result, 1));
+        }
+        return pairs(result, 1);
+    }
+
+    /**
+     * Put holds back to earlier quantities without checking stock
+     */
+    public void restore(String userId, Map<String, Integer> previous) {
+        if (!previous.isEmpty()) {
+            runReserve(userId, previous, Map.of(), false);
+        }
+    }
+
+    public void release(String userId, Collection<String> productIds) {
+        runRelease(userId, productIds, "release");
+    }
+
+    public void releaseAll(String userId) {
+        runRelease(userId, heldProducts(userId), "release");
+    }
+
+    /**
+     * Turn the user's live holds into sales at checkout. Returns the consumed quantity per product.
+     */
+    public Map<String, Integer> consume(String userId) {
+        return runRelease(userId, heldProducts(userId), "consume");
+    }
+
+    /**
+     * Units not held by any cart, per product. Products with no known stock level are left out.
+     */
+    public Map<String, Integer> available(Collection<String> productIds) {
+        List<String> ids = new ArrayList<>(productIds);
+        Map<String, Integer> available = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return available;
+        }
+        List<String> keys = new ArrayList<>(ids.size() * 2);
+        ids.forEach(productId -> {
+            keys.add(HOLD_PREFIX + productId);
+            keys.add(EXPIRY_PREFIX + productId);
+        });
+        List<?> result = redisTemplate.execute(AVAILABLE_SCRIPT, keys);
+        for (int i = 0; i < ids.size(); i++) {
+            int units = ((Number) result.get(i)).intValue();
+            if (units >= 0) {
+                available.put(ids.get(i), units);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Keep stock levels current between cart changes
+     */
+    @KafkaListener(
+            topics = "${product.events.topic:product.changed}",
+            groupId = "${cart.reservation.group-id:cart-service-reservations}",
+            autoStartup = "${cart.reservation.enabled:false}")
+    public void onProductChanged(String message) throws JsonProcessingException {
+        // Failures go to the container error handler (retried, then sent to the dead-letter topic)
+        ProductChangedEvent event = objectMapper.readValue(message, ProductChangedEvent.class);
+        if (ProductChangedEvent.STOCK_CHANGED.equals(event.getType()) && event.getStock() != null) {
+            setStock(event.getProductId(), "ACTIVE".equals(event.getStatus()) ? event.getStock() : 0, event.getChangedAt());
+        } else if (ProductChangedEvent.DELETED.equals(event.getType())) {
+            setStock(event.getProductId(), 0, event.getChangedAt());
+        }
+    }
+
+    private void setStock(String productId, int stock, Long changedAt) {
+        redisTemplate.execute(SET_STOCK_SCRIPT, List.of(HOLD_PREFIX + productId),
+                String.valueOf(stock),
+                String.valueOf(changedAt != null ? changedAt : System.currentTimeMillis()),
+                String.valueOf(ttlSeconds * 1000));
+    }
+
+    private List<?> runReserve(String userId, Map<String, Integer> quantities,
+                               Map<String, ProductResponseDTO> products, boolean check) {
+        List<String> keys = new ArrayList<>(quantities.size() * 2 + 1);
+        List<String> args = new ArrayList<>(quantities.size() * 4 + 3);
+        keys.add(USER_PREFIX + userId);
+        args.add(userId);
+        args.add(String.valueOf(ttlSeconds * 1000));
+        args.add(check ? "1" : "0");
+        quantities.forEach((productId, quantity) -> {
+            ProductResponseDTO product = products.get(productId);
+            keys.add(HOLD_PREFIX + productId);
+            keys.add(EXPIRY_PREFIX + productId);
+            args.add(productId);
+            args.add(String.valueOf(quantity));
+            args.add(stockLevel(product));
+            args.add(String.valueOf(product != null && product.getUpdatedAt() != null
+                    ? product.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : 0));
+        });
+        return redisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+    }
+
+    private Map<String, Integer> runRelease(String userId, Collection<String> productIds, String mode) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        List<String> keys = new ArrayList<>(productIds.size() * 2 + 1);
+        List<String> args = new ArrayList<>(productIds.size() + 2);
+        keys.add(USER_PREFIX + userId);
+        args.add(userId);
+        args.add(mode);
+        productIds.forEach(productId -> {
+            keys.add(HOLD_PREFIX + productId);
+            keys.add(EXPIRY_PREFIX + productId);
+            args.add(productId);
+        });
+        return pairs(redisTemplate.execute(RELEASE_SCRIPT, keys, args.toArray()), 0);
+    }
+
+    private Set<String> heldProducts(String userId) {
+        Set<String> productIds = redisTemplate.opsForSet().members(USER_PREFIX + userId);
+        return productIds != null ? productIds : Set.of();
+    }
+
+    /**
+     * Stock level a product allows holds against; unknown stock is not checked
+     */
+    private static String stockLevel(ProductResponseDTO product) {
+        if (product == null || product.getStock() == null) {
+            return "";
+        }
+        return String.valueOf("ACTIVE".equals(product.getStatus()) ? product.getStock() : 0);
+    }
+
+    private static Map<String, Integer> pairs(List<?> values, int offset) {
+        Map<String, Integer> pairs = new LinkedHashMap<>();
+        for (int i = offset; i + 1 < values.size(); i += 2) {
+            pairs.put(String.valueOf(values.get(i)), ((Number) values.get(i + 1)).intValue());
+        }
+        return pairs;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static RedisScript<List> script(String name) {
+        return RedisScript.of(new ClassPathResource("scripts/reservation/" + name), List.class);
+    }
+}
@@ -0,0 +1,80 @@
+package com.nnson128.cart_service.utils;
+
+import com.nnson128.cart_service.dto.CartDTO;
+import com.nnson128.cart_service.dto.CartItemDTO;
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItem;
+import com.nnson128.cart_service.model.CartItemCache;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Conversions between the cart entity, its cached form and the API DTO
+ */
+public final class CartMapper {
+
+    private CartMapper() {
+    }
+
+    /**
+     * Calculate total price and items count
+     */
+    public static void calculateTotalPrice(Cart cart) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem item : cart.getItems()) {
+            BigDecimal itemTotal = item.getPrice().multiply(new BigDecimal(item.getQuantity()));
+            total = total.add(itemTotal);
+        }
+        cart.setTotalPrice(total);
+    }
+
+    /**
+     * Map Cart entity to CartCache
+     */
+    public static CartCache toCache(Cart entity) {
+        List<CartItemCache> items = entity.getItems().stream()
+                .map(item -> CartItemCache.builder()
+                        .productId(item.getProductId())
+                        .productName(item.getProductName())
+                        .price(item.getPrice())
+                        .quantity(item.getQuantity())
+                        .imageUrl(item.getImageUrl())
+                        .addedAt(item.getCreatedAt())
+                        .build())
+                .collect(Collectors.toList());
+
+        return CartCache.builder()
+                .userId(entity.getUserId())
+                .items(items)
+                .totalPrice(entity.getTotalPrice())
+                .totalItems(entity.getItems().size())
+                .version(entity.getVersion() != null ? entity.getVersion() : entity.getUpdatedAt())
+                .ttl(7 * 24 * 60 * 60L) // 7 days in seconds
+                .build();
+    }
+
+    /**
+     * Map CartCache to CartDTO
+     */
+    public static CartDTO toDTO(CartCache cache) {
+        List<CartItemDTO> items = cache.getItems().stream()
+                .map(item -> CartItemDTO.builder()
+                        .productId(item.getProductId())
+                        .productName(item.getProductName())
+                        .price(item.getPrice())
+                        .quantity(item.getQuantity())
+                        .imageUrl(item.getImageUrl())
+                        .build())
+                .collect(Collectors.toList());
+
+        return CartDTO.builder()
+                .userId(cache.getUserId())
+                .items(items)
+                .totalPrice(cache.getTotalPrice())
+                .totalItems(cache.getTotalItems())
+                .build();
+    }
+}
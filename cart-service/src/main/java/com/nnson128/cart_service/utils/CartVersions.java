@@ -0,0 +1,22 @@
+package com.nnson128.cart_service.utils;
+
+/**
+ * Cart versions are max(previous + 1, current time in ms): they grow with every change,
+ * and a cart created after a clear starts above anything the previous cart reached.
+ */
+public final class CartVersions {
+
+    private CartVersions() {
+    }
+
+    public static long next(Long current) {
+        return Math.max(current == null ? 1L : current + 1, System.currentTimeMillis());
+    }
+
+    /**
+     * Strong ETag for a cart version, {@code "0"} when the user has no cart
+     */
+    public static String etag(Long version) {
+        return "\"" + (version != null ? version : 0L) + "\"";
+    }
+}
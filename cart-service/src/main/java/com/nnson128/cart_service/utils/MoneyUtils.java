@@ -0,0 +1,27 @@
+package com.nnson128.cart_service.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Converts prices to and from minor units (scale 2, same as the price columns)
+ * so they can be stored and summed as plain longs.
+ */
+public final class MoneyUtils {
+
+    public static final int PRICE_SCALE = 2;
+
+    private MoneyUtils() {
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.setScale(PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, PRICE_SCALE);
+    }
+}
@@ -0,0 +1,33 @@
+-- Count one idle cart as abandoned on the day of its last activity, exactly once.
+-- KEYS[1] activity zset, KEYS[2] snapshot hash, KEYS[3] day totals hash, KEYS[4] day users HyperLogLog,
+-- KEYS[5] day product value zset, KEYS[6] day product units zset
+-- ARGV[1] userId, ARGV[2] last activity time in ms as read by the sweep, ARGV[3] retention in seconds
+-- Snapshot json: {"v": cart value in minor units, "l": [[productId, quantity, line value in minor units], ...]}
+-- Returns 1 when counted, 0 when the cart changed since the sweep read it or another instance counted it.
+
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if not score or tonumber(score) ~= tonumber(ARGV[2]) then
+    return 0
+end
+redis.call('ZREM', KEYS[1], ARGV[1])
+local snapshot = redis.call('HGET', KEYS[2], ARGV[1])
+redis.call('HDEL', KEYS[2], ARGV[1])
+if not snapshot then
+    return 0
+end
+
+local cart = cjson.decode(snapshot)
+local units = 0
+for _, line in ipairs(cart.l) do
+    redis.call('ZINCRBY', KEYS[5], line[3], line[1])
+    redis.call('ZINCRBY', KEYS[6], line[2], line[1])
+    units = units + line[2]
+end
+redis.call('HINCRBY', KEYS[3], 'carts', 1)
+redis.call('HINCRBY', KEYS[3], 'value', cart.v)
+redis.call('HINCRBY', KEYS[3], 'units', units)
+redis.call('PFADD', KEYS[4], ARGV[1])
+for i = 3, 6 do
+    redis.call('EXPIRE', KEYS[i], ARGV[3])
+end
+return 1
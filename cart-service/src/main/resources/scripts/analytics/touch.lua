@@ -0,0 +1,18 @@
+-- Record cart activity: remember when the user last changed a cart and what it held.
+-- KEYS[1] activity zset, KEYS[2] snapshot hash, KEYS[3] active users HyperLogLog of the day
+-- ARGV[1] userId, ARGV[2] cart snapshot json ('' when the cart is empty or closed), ARGV[3] retention in seconds
+-- Returns the activity time in ms.
+
+local time = redis.call('TIME')
+local at = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+if ARGV[2] == '' then
+    redis.call('ZREM', KEYS[1], ARGV[1])
+    redis.call('HDEL', KEYS[2], ARGV[1])
+else
+    redis.call('ZADD', KEYS[1], at, ARGV[1])
+    redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+    redis.call('PFADD', KEYS[3], ARGV[1])
+    redis.call('EXPIRE', KEYS[3], ARGV[3])
+end
+return at
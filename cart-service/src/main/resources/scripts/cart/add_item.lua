@@ -0,0 +1,43 @@
+-- Add quantity to one cart line and update the running totals in a single step.
+-- KEYS[1] cart hash, KEYS[2] dirty set, KEYS[3] product index set
+-- ARGV[1] userId, ARGV[2] productId, ARGV[3] quantity to add, ARGV[4] item json,
+-- ARGV[5] '1' to overwrite the details of an existing line, ARGV[6] ttl in seconds
+-- Returns the cart hash, or an empty list when the cart has not been loaded into Redis.
+
+if redis.call('HEXISTS', KEYS[1], '_v') == 0 then
+    return {}
+end
+
+local quantityField = 'q:' .. ARGV[2]
+local itemField = 'i:' .. ARGV[2]
+local oldQuantity = tonumber(redis.call('HGET', KEYS[1], quantityField) or '0')
+local oldJson = redis.call('HGET', KEYS[1], itemField)
+
+local item = cjson.decode(ARGV[4])
+local itemJson = ARGV[4]
+local oldPrice = 0
+local newLines = 1
+
+if oldJson then
+    local oldItem = cjson.decode(oldJson)
+    oldPrice = oldItem.price
+    newLines = 0
+    if ARGV[5] == '1' then
+        item.addedAt = oldItem.addedAt
+        itemJson = cjson.encode(item)
+    else
+        item = oldItem
+        itemJson = oldJson
+    end
+end
+
+local newQuantity = oldQuantity + tonumber(ARGV[3])
+redis.call('HSET', KEYS[1], quantityField, newQuantity, itemField, itemJson)
+redis.call('HINCRBY', KEYS[1], 'totalPrice', item.price * newQuantity - oldPrice * oldQuantity)
+redis.call('HINCRBY', KEYS[1], 'totalItems', newLines)
+bumpVersion(KEYS[1])
+redis.call('EXPIRE', KEYS[1], ARGV[6])
+redis.call('SADD', KEYS[2], ARGV[1])
+redis.call('SADD', KEYS[3], ARGV[1])
+redis.call('EXPIRE', KEYS[3], ARGV[6])
+return redis.call('HGETALL', KEYS[1])
@@ -0,0 +1,58 @@
+-- Apply several cart lines and update the running totals in a single step.
+-- KEYS[1] cart hash, KEYS[2] dirty set, KEYS[3..] product index set of every line, in line order
+-- ARGV[1] userId, ARGV[2] ttl in seconds, ARGV[3] 'max' to keep the larger of the stored and given
+-- quantity instead of adding them, then for every line: productId, quantity, item json,
+-- '1' to overwrite the details of an existing line
+-- Returns the cart hash, or an empty list when the cart has not been loaded into Redis.
+
+if redis.call('HEXISTS', KEYS[1], '_v') == 0 then
+    return {}
+end
+
+local keepLarger = ARGV[3] == 'max'
+local priceDelta = 0
+local newLines = 0
+
+for i = 4, #ARGV, 4 do
+    local quantityField = 'q:' .. ARGV[i]
+    local itemField = 'i:' .. ARGV[i]
+    local quantity = tonumber(ARGV[i + 1])
+    local oldQuantity = tonumber(redis.call('HGET', KEYS[1], quantityField) or '0')
+    local oldJson = redis.call('HGET', KEYS[1], itemField)
+
+    local item = cjson.decode(ARGV[i + 2])
+    local itemJson = ARGV[i + 2]
+    local oldPrice = 0
+
+    if oldJson then
+        local oldItem = cjson.decode(oldJson)
+        oldPrice = oldItem.price
+        if ARGV[i + 3] == '1' then
+            item.addedAt = oldItem.addedAt
+            itemJson = cjson.encode(item)
+        else
+            item = oldItem
+            itemJson = oldJson
+        end
+    else
+        newLines = newLines + 1
+    end
+
+    local newQuantity = oldQuantity + quantity
+    if keepLarger then
+        newQuantity = math.max(oldQuantity, quantity)
+    end
+    redis.call('HSET', KEYS[1], quantityField, newQuantity, itemField, itemJson)
+    priceDelta = priceDelta + item.price * newQuantity - oldPrice * oldQuantity
+
+    local indexKey = KEYS[3 + (i - 4) / 4]
+    redis.call('SADD', indexKey, ARGV[1])
+    redis.call('EXPIRE', indexKey, ARGV[2])
+end
+
+redis.call('HINCRBY', KEYS[1], 'totalPrice', priceDelta)
+redis.call('HINCRBY', KEYS[1], 'totalItems', newLines)
+bumpVersion(KEYS[1])
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+redis.call('SADD', KEYS[2], ARGV[1])
+return redis.call('HGETALL', KEYS[1])
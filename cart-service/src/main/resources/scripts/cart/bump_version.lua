@@ -0,0 +1,8 @@
+-- Shared by the cart scripts that change a line; HashCartCacheStore prepends it to their source.
+-- Cart versions follow max(previous + 1, now in ms) so they also grow across a cleared and recreated cart
+local function bumpVersion(key)
+    local time = redis.call('TIME')
+    local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    local current = tonumber(redis.call('HGET', key, 'version') or '0')
+    redis.call('HSET', key, 'version', string.format('%d', math.max(current + 1, now)))
+end
@@ -0,0 +1,25 @@
+-- Remove one cart line and update the running totals in a single step.
+-- KEYS[1] cart hash, KEYS[2] dirty set
+-- ARGV[1] userId, ARGV[2] productId, ARGV[3] ttl in seconds
+-- Returns the cart hash, or an empty list when the cart has not been loaded into Redis.
+
+if redis.call('HEXISTS', KEYS[1], '_v') == 0 then
+    return {}
+end
+
+local quantityField = 'q:' .. ARGV[2]
+local itemField = 'i:' .. ARGV[2]
+local itemJson = redis.call('HGET', KEYS[1], itemField)
+
+if itemJson then
+    local oldQuantity = tonumber(redis.call('HGET', KEYS[1], quantityField) or '0')
+    local price = cjson.decode(itemJson).price
+    redis.call('HDEL', KEYS[1], quantityField, itemField)
+    redis.call('HINCRBY', KEYS[1], 'totalPrice', -(price * oldQuantity))
+    redis.call('HINCRBY', KEYS[1], 'totalItems', -1)
+    bumpVersion(KEYS[1])
+end
+
+redis.call('EXPIRE', KEYS[1], ARGV[3])
+redis.call('SADD', KEYS[2], ARGV[1])
+return redis.call('HGETALL', KEYS[1])
@@ -0,0 +1,26 @@
+-- Replace the details of one cart line after a product change and shift the total by the price difference.
+-- KEYS[1] cart hash, KEYS[2] dirty set, KEYS[3] product index set
+-- ARGV[1] userId, ARGV[2] productId, ARGV[3] item json (addedAt is kept from the stored line)
+-- Returns 1 when the line was repriced, 0 when the cart is not loaded or no longer holds the product.
+
+if redis.call('HEXISTS', KEYS[1], '_v') == 0 then
+    return 0
+end
+
+local itemField = 'i:' .. ARGV[2]
+local oldJson = redis.call('HGET', KEYS[1], itemField)
+if not oldJson then
+    redis.call('SREM', KEYS[3], ARGV[1])
+    return 0
+end
+
+local oldItem = cjson.decode(oldJson)
+local item = cjson.decode(ARGV[3])
+item.addedAt = oldItem.addedAt
+local quantity = tonumber(redis.call('HGET', KEYS[1], 'q:' .. ARGV[2]) or '0')
+
+redis.call('HSET', KEYS[1], itemField, cjson.encode(item))
+redis.call('HINCRBY', KEYS[1], 'totalPrice', (item.price - oldItem.price) * quantity)
+bumpVersion(KEYS[1])
+redis.call('SADD', KEYS[2], ARGV[1])
+return 1
@@ -0,0 +1,22 @@
+-- Replace the whole cart hash.
+-- KEYS[1] cart hash, KEYS[2] dirty set
+-- ARGV[1] userId, ARGV[2] '1' to only write when no complete cart is stored,
+-- ARGV[3] ttl in seconds, ARGV[4] '1' to mark the cart dirty, ARGV[5..] field/value pairs
+-- A replaced cart gets a version above both the given one and the one it replaces.
+-- Returns the cart hash as stored after the call.
+if ARGV[2] == '1' and redis.call('HEXISTS', KEYS[1], '_v') == 1 then
+    return redis.call('HGETALL', KEYS[1])
+end
+
+local previous = redis.call('HGET', KEYS[1], 'version')
+redis.call('DEL', KEYS[1])
+redis.call('HSET', KEYS[1], unpack(ARGV, 5))
+if ARGV[2] ~= '1' and previous then
+    local given = tonumber(redis.call('HGET', KEYS[1], 'version') or '0')
+    redis.call('HSET', KEYS[1], 'version', string.format('%d', math.max(given, tonumber(previous) + 1)))
+end
+redis.call('EXPIRE', KEYS[1], ARGV[3])
+if ARGV[4] == '1' then
+    redis.call('SADD', KEYS[2], ARGV[1])
+end
+return redis.call('HGETALL', KEYS[1])
@@ -0,0 +1,26 @@
+-- Set the quantity of one cart line and update the running totals in a single step.
+-- KEYS[1] cart hash, KEYS[2] dirty set
+-- ARGV[1] userId, ARGV[2] productId, ARGV[3] new quantity, ARGV[4] ttl in seconds
+-- Returns the cart hash (unchanged when the product is not in the cart),
+-- or an empty list when the cart has not been loaded into Redis.
+
+if redis.call('HEXISTS', KEYS[1], '_v') == 0 then
+    return {}
+end
+
+local quantityField = 'q:' .. ARGV[2]
+local itemJson = redis.call('HGET', KEYS[1], 'i:' .. ARGV[2])
+if not itemJson then
+    return redis.call('HGETALL', KEYS[1])
+end
+
+local oldQuantity = tonumber(redis.call('HGET', KEYS[1], quantityField) or '0')
+local newQuantity = tonumber(ARGV[3])
+local price = cjson.decode(itemJson).price
+
+redis.call('HSET', KEYS[1], quantityField, newQuantity)
+redis.call('HINCRBY', KEYS[1], 'totalPrice', price * (newQuantity - oldQuantity))
+bumpVersion(KEYS[1])
+redis.call('EXPIRE', KEYS[1], ARGV[4])
+redis.call('SADD', KEYS[2], ARGV[1])
+return redis.call('HGETALL', KEYS[1])
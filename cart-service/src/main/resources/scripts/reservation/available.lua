@@ -0,0 +1,27 @@
+-- Units of each product not held by any cart.
+-- KEYS per product: KEYS[2i-1] hold hash, KEYS[2i] expiry zset
+-- Returns one value per product, -1 when the stock level is not known.
+
+local time = redis.call('TIME')
+local at = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local result = {}
+
+for i = 1, #KEYS / 2 do
+    local hold, expiry = KEYS[2 * i - 1], KEYS[2 * i]
+    local expired = redis.call('ZRANGEBYSCORE', expiry, '-inf', at, 'LIMIT', 0, 100)
+    for _, member in ipairs(expired) do
+        local quantity = tonumber(redis.call('HGET', hold, member) or '0')
+        if quantity > 0 then
+            redis.call('HINCRBY', hold, '_held', -quantity)
+        end
+        redis.call('HDEL', hold, member)
+        redis.call('ZREM', expiry, member)
+    end
+    local stock = redis.call('HGET', hold, '_stock')
+    if stock then
+        table.insert(result, math.max(tonumber(stock) - tonumber(redis.call('HGET', hold, '_held') or '0'), 0))
+    else
+        table.insert(result, -1)
+    end
+end
+return result
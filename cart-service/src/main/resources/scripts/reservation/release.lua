@@ -0,0 +1,29 @@
+-- Release the holds of one user, or consume them at checkout.
+-- KEYS[1] user hold set, then per product: KEYS[2i] hold hash, KEYS[2i+1] expiry zset
+-- ARGV[1] userId, ARGV[2] 'release' or 'consume', then one productId per product
+-- Consuming also lowers the last known stock level, since the held units are now sold.
+-- Returns {productId, quantity, ...} for the holds that were still live.
+
+local time = redis.call('TIME')
+local at = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local result = {}
+
+for i = 1, (#KEYS - 1) / 2 do
+    local hold, expiry = KEYS[2 * i], KEYS[2 * i + 1]
+    local quantity = tonumber(redis.call('HGET', hold, ARGV[1]) or '0')
+    local expiresAt = tonumber(redis.call('ZSCORE', expiry, ARGV[1]) or '0')
+    if quantity > 0 then
+        redis.call('HINCRBY', hold, '_held', -quantity)
+        redis.call('HDEL', hold, ARGV[1])
+        redis.call('ZREM', expiry, ARGV[1])
+        if expiresAt > at then
+            if ARGV[2] == 'consume' and redis.call('HEXISTS', hold, '_stock') == 1 then
+                redis.call('HINCRBY', hold, '_stock', -quantity)
+            end
+            table.insert(result, ARGV[2 + i])
+            table.insert(result, quantity)
+        end
+    end
+    redis.call('SREM', KEYS[1], ARGV[2 + i])
+end
+return result
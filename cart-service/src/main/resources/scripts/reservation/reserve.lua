@@ -0,0 +1,80 @@
+-- Set the soft stock holds of one user on several products, all or nothing.
+-- KEYS[1] user hold set, then per product: KEYS[2i] hold hash, KEYS[2i+1] expiry zset
+-- ARGV[1] userId, ARGV[2] hold ttl in ms, ARGV[3] '1' to check stock or '0' to set holds unchecked,
+-- then per product: productId, held quantity (0 releases), stock level ('' when unknown), stock level time in ms
+-- Hold hash fields: _stock last known stock level, _stock_at its time, _held sum of live holds, one per userId.
+-- Returns {1, productId, previous hold, ...}, or {0, productId, available, ...} for the products short of stock.
+
+local function now()
+    local time = redis.call('TIME')
+    return tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+-- Expired holds are dropped lazily, at most 100 per call so a burst of expiries is spread out
+local function purge(hold, expiry, at)
+    local expired = redis.call('ZRANGEBYSCORE', expiry, '-inf', at, 'LIMIT', 0, 100)
+    for _, member in ipairs(expired) do
+        local quantity = tonumber(redis.call('HGET', hold, member) or '0')
+        if quantity > 0 then
+            redis.call('HINCRBY', hold, '_held', -quantity)
+        end
+        redis.call('HDEL', hold, member)
+        redis.call('ZREM', expiry, member)
+    end
+end
+
+local at = now()
+local userId = ARGV[1]
+local ttl = tonumber(ARGV[2])
+local count = (#KEYS - 1) / 2
+local previous = {}
+local rejected = {}
+
+for i = 1, count do
+    local hold, expiry = KEYS[2 * i], KEYS[2 * i + 1]
+    local base = 4 + (i - 1) * 4
+    purge(hold, expiry, at)
+    if ARGV[base + 2] ~= '' and tonumber(ARGV[base + 3]) > tonumber(redis.call('HGET', hold, '_stock_at') or '-1') then
+        redis.call('HSET', hold, '_stock', ARGV[base + 2], '_stock_at', ARGV[base + 3])
+    end
+    local current = tonumber(redis.call('HGET', hold, userId) or '0')
+    local wanted = tonumber(ARGV[base + 1])
+    local stock = redis.call('HGET', hold, '_stock')
+    previous[i] = current
+    if ARGV[3] == '1' and wanted > current and stock then
+        local available = tonumber(stock) - (tonumber(redis.call('HGET', hold, '_held') or '0') - current)
+        if wanted > available then
+            table.insert(rejected, ARGV[base])
+            table.insert(rejected, math.max(available, 0))
+        end
+    end
+end
+
+if #rejected > 0 then
+    table.insert(rejected, 1, 0)
+    return rejected
+end
+
+local result = {1}
+for i = 1, count do
+    local hold, expiry = KEYS[2 * i], KEYS[2 * i + 1]
+    local base = 4 + (i - 1) * 4
+    local wanted = tonumber(ARGV[base + 1])
+    redis.call('HINCRBY', hold, '_held', wanted - previous[i])
+    if wanted > 0 then
+        redis.call('HSET', hold, userId, wanted)
+        redis.call('ZADD', expiry, at + ttl, userId)
+        redis.call('SADD', KEYS[1], ARGV[base])
+    else
+        redis.call('HDEL', hold, userId)
+        redis.call('ZREM', expiry, userId)
+        redis.call('SREM', KEYS[1], ARGV[base])
+    end
+    -- The newest hold expires last, so the product keys never outlive their holds
+    redis.call('PEXPIRE', hold, ttl)
+    redis.call('PEXPIRE', expiry, ttl)
+    table.insert(result, ARGV[base])
+    table.insert(result, previous[i])
+end
+redis.call('PEXPIRE', KEYS[1], ttl)
+return result
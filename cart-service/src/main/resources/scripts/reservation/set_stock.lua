@@ -0,0 +1,13 @@
+-- Record a product's stock level unless a newer one is already known.
+-- KEYS[1] hold hash
+-- ARGV[1] stock level, ARGV[2] stock level time in ms, ARGV[3] ttl in ms for a hash without holds
+-- Returns 1 when the level was stored.
+
+if tonumber(ARGV[2]) <= tonumber(redis.call('HGET', KEYS[1], '_stock_at') or '-1') then
+    return 0
+end
+redis.call('HSET', KEYS[1], '_stock', ARGV[1], '_stock_at', ARGV[2])
+if redis.call('PTTL', KEYS[1]) < 0 then
+    redis.call('PEXPIRE', KEYS[1], ARGV[3])
+end
+return 1
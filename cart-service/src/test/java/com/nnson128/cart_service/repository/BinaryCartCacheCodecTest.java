@@ -0,0 +1,94 @@
+package com.nnson128.cart_service.repository;
+
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCartCacheCodecTest {
+
+    private final BinaryCartCacheCodec codec = new BinaryCartCacheCodec(1024);
+
+    @Test
+    void roundTripsSmallCartUncompressed() {
+        CartCache cart = cart(1);
+        cart.getItems().get(0).setProductName("Áo thun cổ tròn");
+
+        byte[] bytes = codec.encode(cart);
+
+        assertEquals(0, bytes[2] & BinaryCartCacheCodec.FLAG_LZ4);
+        assertEquals(cart, codec.decode(bytes));
+    }
+
+    @Test
+    void roundTripsLargeCartCompressed() {
+        CartCache cart = cart(200);
+
+        byte[] bytes = codec.encode(cart);
+
+        assertEquals(BinaryCartCacheCodec.FLAG_LZ4, bytes[2] & BinaryCartCacheCodec.FLAG_LZ4);
+        assertEquals(cart, codec.decode(bytes));
+    }
+
+    @Test
+    void keepsNullsAndEmptyStringsApart() {
+        CartItemCache item = CartItemCache.builder().productId("p-1").productName("").build();
+        CartCache cart = CartCache.builder().userId("user-1").items(List.of(item)).build();
+
+        CartCache decoded = codec.decode(codec.encode(cart));
+
+        assertEquals("", decoded.getItems().get(0).getProductName());
+        assertEquals(null, decoded.getItems().get(0).getImageUrl());
+        assertEquals(null, decoded.getItems().get(0).getPrice());
+        assertEquals(null, decoded.getTotalPrice());
+    }
+
+    @Test
+    void rejectsOtherLayouts() {
+        byte[] bytes = codec.encode(cart(1));
+        bytes[1] = 99;
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(bytes));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("{\"userId\":1}".getBytes()));
+    }
+
+    @Test
+    void isSmallerThanItemStrings() {
+        CartCache cart = cart(20);
+        int strings = cart.getItems().stream()
+                .mapToInt(i -> i.getProductId().length() + i.getProductName().length() + i.getImageUrl().length())
+                .sum();
+
+        assertTrue(codec.encode(cart).length < strings);
+    }
+
+    private static CartCache cart(int itemCount) {
+        List<CartItemCache> items = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < itemCount; i++) {
+            BigDecimal price = new BigDecimal("199000.00").add(BigDecimal.valueOf(i));
+            items.add(CartItemCache.builder()
+                    .productId("product-" + i)
+                    .productName("Product name " + i)
+                    .price(price)
+                    .quantity(1 + i % 5)
+                    .imageUrl("https://cdn.example.com/images/products/" + i + ".jpg")
+                    .addedAt(1_700_000_000_000L + i)
+                    .build());
+            total = total.add(price.multiply(BigDecimal.valueOf(1 + i % 5)));
+        }
+        return CartCache.builder()
+                .userId("user-1")
+                .items(items)
+                .totalPrice(total)
+                .totalItems(itemCount)
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.nnson128.cart_service.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisKeyValueAdapter;
+import org.springframework.data.redis.core.RedisKeyValueTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the Redis work of a single quantity change between the {@code entity}
+ * and {@code hash} cache layouts, for small and large carts.
+ */
+@Slf4j
+class CartCacheMutationCostTest {
+
+    private static final int[] CART_SIZES = {1, 20, 100};
+
+    private RecordingRedisConnectionFactory connectionFactory;
+    private RedisKeyValueTemplate keyValueTemplate;
+    private HashCartCacheStore hashStore;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new RecordingRedisConnectionFactory();
+
+        RedisTemplate<byte[], byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        RedisMappingContext mappingContext = new RedisMappingContext();
+        keyValueTemplate = new RedisKeyValueTemplate(new RedisKeyValueAdapter(redisTemplate, mappingContext), mappingContext);
+
+        hashStore = new HashCartCacheStore(new StringRedisTemplate(connectionFactory), new ObjectMapper());
+    }
+
+    @Test
+    void singleItemUpdateCostsOneRoundTripRegardlessOfCartSize() {
+        long smallestHashBytes = -1;
+        for (int size : CART_SIZES) {
+            CartCache cart = cart(size);
+            cart.getItems().get(0).setQuantity(5);
+
+            connectionFactory.reset();
+            keyValueTemplate.update(cart);
+            Cost entity = Cost.of(connectionFactory);
+
+            connectionFactory.reset();
+            hashStore.saveItem(cart, cart.getItems().get(0).getProductId());
+            Cost hash = Cost.of(connectionFactory);
+
+            log.debug("{} items: entity {}, hash {} (cmds/rtt/bytes)", size, entity, hash);
+
+            assertThat(hash.roundTrips()).isEqualTo(1);
+            assertThat(hash.roundTrips()).isLessThan(entity.roundTrips());
+            assertThat(hash.bytes()).isLessThan(entity.bytes());
+            if (smallestHashBytes < 0) {
+                smallestHashBytes = hash.bytes();
+            }
+            // the delta only carries the changed line and the totals, so large carts cost the same
+            assertThat(hash.bytes()).isBetween(smallestHashBytes, smallestHashBytes + 16);
+        }
+    }
+
+    @Test
+    void removingAnItemDoesNotRewriteTheRemainingLines() {
+        CartCache cart = cart(100);
+        String removed = cart.getItems().remove(0).getProductId();
+        cart.setTotalItems(cart.getItems().size());
+
+        connectionFactory.reset();
+        keyValueTemplate.update(cart);
+        Cost entity = Cost.of(connectionFactory);
+
+        connectionFactory.reset();
+        hashStore.removeItem(cart, removed);
+        Cost hash = Cost.of(connectionFactory);
+
+        assertThat(hash.roundTrips()).isEqualTo(1);
+        assertThat(hash.bytes() * 50).isLessThan(entity.bytes());
+    }
+
+    private static CartCache cart(int size) {
+        List<CartItemCache> items = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < size; i++) {
+            BigDecimal price = new BigDecimal("199000.00").add(BigDecimal.valueOf(i));
+            items.add(CartItemCache.builder()
+                    .productId("3f1c2a9e-5b7d-4c1e-9a0b-" + String.format("%012d", i))
+                    .productName("Tai nghe Bluetooth chống ồn model " + i)
+                    .price(price)
+                    .quantity(1)
+                    .imageUrl("https://cdn.example.com/products/" + i + "/main-image.jpg")
+                    .addedAt(1_700_000_000_000L + i)
+                    .build());
+            total = total.add(price);
+        }
+        return CartCache.builder()
+                .userId("6a2f41a3-c54c-4e1b-8d0a-2d5c7b1f9e33")
+                .items(items)
+                .totalPrice(total)
+                .totalItems(size)
+                .ttl(7 * 24 * 60 * 60L)
+                .build();
+    }
+
+    private record Cost(int commands, int roundTrips, long bytes) {
+
+        static Cost of(RecordingRedisConnectionFactory factory) {
+            return new Cost(factory.commands().size(), factory.roundTrips(), factory.payloadBytes());
+        }
+
+        @Override
+        public String toString() {
+            return commands + " / " + roundTrips + " / " + bytes;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.nnson128.cart_service.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.model.Cart;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItem;
+import com.nnson128.cart_service.model.CartItemCache;
+import com.nnson128.cart_service.utils.CartVersions;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the database work of single cart changes and write-behind flushes between the
+ * {@code relational} and {@code json} persistence layouts, for small and large carts.
+ * Runs against H2 in MySQL mode; the counts, not the timings, are what carries over to MySQL.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart_layout;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class CartLayoutStatementCountTest {
+
+    private static final int[] CART_SIZES = {1, 20, 100};
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CartJpaRepository cartJpaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private RecordingDataSource recorder;
+    private TransactionTemplate transactionTemplate;
+    private RelationalCartStore relationalStore;
+    private JsonCartStore jsonStore;
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource target && !(bean instanceof RecordingDataSource)
+                            ? new RecordingDataSource(target) : bean;
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        recorder = (RecordingDataSource) dataSource;
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // JsonCartStore adds a MySQL JSON column on startup; H2 gets a plain text column instead
+        jdbcTemplate.execute("ALTER TABLE carts ADD COLUMN IF NOT EXISTS " + JsonCartStore.ITEMS_COLUMN + " CLOB");
+        jdbcTemplate.update("DELETE FROM cart_items");
+        jdbcTemplate.update("DELETE FROM carts");
+
+        relationalStore = new RelationalCartStore(cartJpaRepository, new CartJdbcRepository(jdbcTemplate));
+        jsonStore = new JsonCartStore(jdbcTemplate, new ObjectMapper(), transactionTemplate);
+    }
+
+    @Test
+    void jsonLayoutChangesACartInTwoRoundTripsRegardlessOfCartSize() {
+        for (int size : CART_SIZES) {
+            for (String change : List.of("add", "update", "remove", "clear")) {
+                Cost relational = measure(relationalStore, "rel-" + size + "-" + change, size, change);
+                Cost json = measure(jsonStore, "json-" + size + "-" + change, size, change);
+                log.debug("{} items, {}: relational {}, json {} (stmts/rtt)", size, change, relational, json);
+
+                assertThat(json.roundTrips()).isEqualTo(2);
+                assertThat(json.roundTrips()).isLessThanOrEqualTo(relational.roundTrips());
+            }
+        }
+    }
+
+    @Test
+    void jsonLayoutFlushesManyCartsInOneBatch() {
+        List<CartCache> carts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            carts.add(cartCache("flush-" + i, 5));
+        }
+
+        recorder.reset();
+        transactionTemplate.executeWithoutResult(status -> relationalStore.saveAll(carts));
+        Cost relational = Cost.of(recorder);
+
+        recorder.reset();
+        transactionTemplate.executeWithoutResult(status -> jsonStore.saveAll(carts));
+        Cost json = Cost.of(recorder);
+
+        log.debug("Flush of 50 carts x 5 items: relational {}, json {} (stmts/rtt)", relational, json);
+        assertThat(json.roundTrips()).isEqualTo(1);
+        assertThat(json.statements()).isEqualTo(50);
+        assertThat(relational.statements()).isEqualTo(50 + 50 + 250);
+    }
+
+    @Test
+    void relationalCartsStayReadableWhileAndAfterTheyAreMigrated() {
+        seed(relationalStore, "legacy", 3);
+
+        recorder.reset();
+        Cart beforeMigration = jsonStore.findById("legacy").orElseThrow();
+        assertThat(recorder.roundTrips()).isEqualTo(2);
+        assertThat(beforeMigration.getItems()).extracting(CartItem::getProductId)
+                .containsExactly("product-0", "product-1", "product-2");
+
+        assertThat(jsonStore.migrate(List.of("legacy"))).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items", Integer.class)).isZero();
+        assertThat(jsonStore.findUnmigrated("", 10)).isEmpty();
+
+        recorder.reset();
+        Cart afterMigration = jsonStore.findById("legacy").orElseThrow();
+        assertThat(recorder.roundTrips()).isEqualTo(1);
+        assertThat(afterMigration.getItems()).extracting(CartItem::getProductId)
+                .containsExactly("product-0", "product-1", "product-2");
+        assertThat(afterMigration.getItems()).extracting(CartItem::getPrice)
+                .containsExactly(new BigDecimal("199000.00"), new BigDecimal("199001.00"), new BigDecimal("199002.00"));
+        assertThat(afterMigration.getTotalPrice()).isEqualByComparingTo(beforeMigration.getTotalPrice());
+    }
+
+    /**
+     * Run one change the way CartService does: locking read, change, version and total, save
+     */
+    private Cost measure(CartStore store, String userId, int size, String change) {
+        seed(store, userId, size);
+        recorder.reset();
+        if (change.equals("clear")) {
+            transactionTemplate.executeWithoutResult(status -> store.deleteById(userId));
+            return Cost.of(recorder);
+        }
+        Consumer<Cart> mutation = switch (change) {
+            case "add" -> cart -> cart.getItems().add(item(cart, size));
+            case "update" -> cart -> cart.getItems().get(0).setQuantity(5);
+            default -> cart -> cart.getItems().remove(0);
+        };
+        transactionTemplate.executeWithoutResult(status -> {
+            Cart cart = store.findByIdForUpdate(userId).orElseThrow();
+            mutation.accept(cart);
+            cart.setVersion(CartVersions.next(cart.getVersion()));
+            cart.setTotalPrice(total(cart));
+            store.save(cart);
+        });
+        return Cost.of(recorder);
+    }
+
+    private void seed(CartStore store, String userId, int size) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Cart cart = store.create(userId);
+            for (int i = 0; i < size; i++) {
+                cart.getItems().add(item(cart, i));
+            }
+            cart.setVersion(CartVersions.next(null));
+            cart.setTotalPrice(total(cart));
+            store.save(cart);
+        });
+    }
+
+    private static CartItem item(Cart cart, int i) {
+        return CartItem.builder()
+                .cart(cart)
+                .productId("product-" + i)
+                .productName("Tai nghe Bluetooth chống ồn model " + i)
+                .price(new BigDecimal("199000.00").add(BigDecimal.valueOf(i)))
+                .quantity(1)
+                .imageUrl("https://cdn.example.com/products/" + i + "/main-image.jpg")
+                .build();
+    }
+
+    private static BigDecimal total(Cart cart) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem item : cart.getItems()) {
+            total = total.add(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        return total;
+    }
+
+    private static CartCache cartCache(String userId, int size) {
+        List<CartItemCache> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(CartItemCache.builder()
+                    .productId("product-" + i)
+                    .productName("Product " + i)
+                    .price(new BigDecimal("10.00"))
+                    .quantity(1)
+                    .addedAt(1_700_000_000_000L)
+                    .build());
+        }
+        return CartCache.builder()
+                .userId(userId)
+                .items(items)
+                .totalPrice(new BigDecimal("10.00").multiply(BigDecimal.valueOf(size)))
+                .totalItems(size)
+                .version(CartVersions.next(null))
+                .build();
+    }
+
+    private record Cost(int statements, int roundTrips) {
+
+        static Cost of(RecordingDataSource recorder) {
+            return new Cost(recorder.statements().size(), recorder.roundTrips());
+        }
+
+        @Override
+        public String toString() {
+            return statements + "/" + roundTrips;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.nnson128.cart_service.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.model.CartCache;
+import com.nnson128.cart_service.model.CartItemCache;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Hammers one cart from many threads through the Lua mutation scripts and checks
+ * that quantities and running totals end up exactly where a serial run would.
+ */
+class CartScriptConcurrencyTest {
+
+    private static final String USER_ID = "stress-user";
+    private static final String DIRTY_KEY = "cart:dirty";
+    private static final long TTL = 3600;
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 250;
+    private static final String[] PRODUCTS = {"p-1", "p-2", "p-3", "p-4", "p-5"};
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private HashCartCacheStore store;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            redisServer = new RedisServer(port);
+            redisServer.start();
+        } catch (Exception e) {
+            redisServer = null;
+        }
+        assumeTrue(redisServer != null, "embedded Redis is not available on this platform");
+
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.delete(List.of(HashCartCacheStore.key(USER_ID), DIRTY_KEY));
+        store = new HashCartCacheStore(redisTemplate, new ObjectMapper());
+        store.replace(CartCache.builder()
+                .userId(USER_ID)
+                .items(new ArrayList<>())
+                .totalPrice(BigDecimal.ZERO)
+                .totalItems(0)
+                .build(), true, TTL, null);
+    }
+
+    @Test
+    void concurrentAddsNeverLoseAnIncrement() throws Exception {
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String productId = PRODUCTS[random.nextInt(PRODUCTS.length)];
+            store.addItem(USER_ID, item(productId, priceOf(productId)), 1, false, TTL, DIRTY_KEY);
+        });
+
+        CartCache cart = store.findByUserId(USER_ID).orElseThrow();
+        int totalQuantity = cart.getItems().stream().mapToInt(CartItemCache::getQuantity).sum();
+        assertThat(totalQuantity).isEqualTo(THREADS * OPERATIONS_PER_THREAD);
+        assertThat(cart.getTotalItems()).isEqualTo(PRODUCTS.length);
+        assertThat(cart.getVersion()).isGreaterThanOrEqualTo(THREADS * OPERATIONS_PER_THREAD);
+        assertTotalsMatchLines(cart);
+        assertThat(redisTemplate.opsForSet().isMember(DIRTY_KEY, USER_ID)).isTrue();
+    }
+
+    @Test
+    void concurrentMixedMutationsKeepTotalsConsistent() throws Exception {
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String productId = PRODUCTS[random.nextInt(PRODUCTS.length)];
+            switch (random.nextInt(4)) {
+                case 0 -> store.removeItem(USER_ID, productId, TTL, DIRTY_KEY);
+                case 1 -> {
+                    try {
+                        store.updateItem(USER_ID, productId, 1 + random.nextInt(5), TTL, DIRTY_KEY);
+                    } catch (RuntimeException ignored) {
+                        // line was removed by another thread
+                    }
+                }
+                // re-adding with a new price re-prices the whole line
+                case 2 -> store.addItem(USER_ID, item(productId, priceOf(productId).add(BigDecimal.ONE)),
+                        1 + random.nextInt(3), true, TTL, DIRTY_KEY);
+                default -> store.addItem(USER_ID, item(productId, priceOf(productId)),
+                        1 + random.nextInt(3), false, TTL, DIRTY_KEY);
+            }
+        });
+
+        CartCache cart = store.findByUserId(USER_ID).orElseThrow();
+        assertThat(cart.getTotalItems()).isEqualTo(cart.getItems().size());
+        assertTotalsMatchLines(cart);
+    }
+
+    @Test
+    void batchAddSumsAndMergeKeepsLargerQuantity() {
+        store.addItem(USER_ID, item("p-1", priceOf("p-1")), 3, false, TTL, DIRTY_KEY);
+
+        store.addItems(USER_ID, List.of(withQuantity(item("p-1", priceOf("p-1")), 2),
+                withQuantity(item("p-2", priceOf("p-2")), 1)), Set.of("p-1", "p-2"), false, TTL, DIRTY_KEY);
+        CartCache merged = store.addItems(USER_ID, List.of(withQuantity(item("p-1", priceOf("p-1")), 4),
+                withQuantity(item("p-2", priceOf("p-2")), 6)), Set.of(), true, TTL, DIRTY_KEY).orElseThrow();
+
+        assertThat(merged.getItems()).extracting(CartItemCache::getProductId, CartItemCache::getQuantity)
+                .containsExactlyInAnyOrder(tuple("p-1", 5), tuple("p-2", 6));
+        assertThat(merged.getTotalItems()).isEqualTo(2);
+        assertTotalsMatchLines(merged);
+    }
+
+    @Test
+    void repriceShiftsTotalAndUsesProductIndex() {
+        redisTemplate.delete(HashCartCacheStore.productIndexKey("p-1"));
+        store.addItem(USER_ID, item("p-1", new BigDecimal("10.00")), 3, false, TTL, DIRTY_KEY);
+        store.addItem(USER_ID, item("p-2", new BigDecimal("5.00")), 1, false, TTL, DIRTY_KEY);
+        assertThat(store.findUserIdsByProductId("p-1")).containsExactly(USER_ID);
+
+        long versionBefore = store.findByUserId(USER_ID).orElseThrow().getVersion();
+        CartItemCache details = CartItemCache.builder()
+                .productId("p-1").productName("Renamed").price(new BigDecimal("8.50")).build();
+        assertThat(store.repriceItem(USER_ID, details, DIRTY_KEY)).isTrue();
+
+        CartCache cart = store.findByUserId(USER_ID).orElseThrow();
+        assertThat(cart.getVersion()).isGreaterThan(versionBefore);
+        CartItemCache line = cart.getItems().stream().filter(i -> i.getProductId().equals("p-1")).findFirst().orElseThrow();
+        assertThat(line.getProductName()).isEqualTo("Renamed");
+        assertThat(line.getAddedAt()).isNotNull();
+        assertThat(cart.getTotalPrice()).isEqualByComparingTo("30.50");
+
+        store.removeItem(USER_ID, "p-1", TTL, DIRTY_KEY);
+        assertThat(store.repriceItem(USER_ID, details, DIRTY_KEY)).isFalse();
+        assertThat(store.findUserIdsByProductId("p-1")).isEmpty();
+    }
+
+    @Test
+    void scriptsReportCartsThatAreNotLoaded() {
+        redisTemplate.delete(HashCartCacheStore.key(USER_ID));
+
+        assertThat(store.addItem(USER_ID, item("p-1", BigDecimal.TEN), 1, true, TTL, DIRTY_KEY)).isEmpty();
+        assertThat(store.removeItem(USER_ID, "p-1", TTL, DIRTY_KEY)).isEmpty();
+        assertThat(store.addItems(USER_ID, List.of(withQuantity(item("p-1", BigDecimal.TEN), 1)), Set.of(),
+                false, TTL, DIRTY_KEY)).isEmpty();
+    }
+
+    private static void runConcurrently(Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        operation.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertTotalsMatchLines(CartCache cart) {
+        BigDecimal expected = cart.getItems().stream()
+                .map(line -> line.getPrice().multiply(BigDecimal.valueOf(line.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(cart.getTotalPrice()).isEqualByComparingTo(expected);
+    }
+
+    private static BigDecimal priceOf(String productId) {
+        return new BigDecimal("19.99").multiply(BigDecimal.valueOf(productId.charAt(2) - '0'));
+    }
+
+    private static CartItemCache withQuantity(CartItemCache item, int quantity) {
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private static CartItemCache item(String productId, BigDecimal price) {
+        return CartItemCache.builder()
+                .productId(productId)
+                .productName("Product " + productId)
+                .price(price)
+                .imageUrl(null)
+                .addedAt(System.currentTimeMillis())
+                .build();
+    }
+}
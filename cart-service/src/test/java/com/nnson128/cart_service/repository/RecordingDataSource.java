@@ -0,0 +1,93 @@
+package com.nnson128.cart_service.repository;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Data source wrapper that records the SQL statements executed through it and the
+ * number of database round trips (a whole JDBC batch counts as one), so persistence
+ * layouts can be compared by the work they send to the database.
+ */
+class RecordingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final List<String> statements = new ArrayList<>();
+    private int roundTrips;
+
+    RecordingDataSource(DataSource target) {
+        super(target);
+    }
+
+    List<String> statements() {
+        return statements;
+    }
+
+    int roundTrips() {
+        return roundTrips;
+    }
+
+    void reset() {
+        statements.clear();
+        roundTrips = 0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) proxy(Connection.class, super.getConnection(), null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return (Connection) proxy(Connection.class, super.getConnection(username, password), null);
+    }
+
+    private Object proxy(Class<?> type, Object target, String sql) {
+        List<String> batch = new ArrayList<>();
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = invoke(method, target, args);
+                    if (result instanceof Statement statement && method.getName().startsWith("prepare")) {
+                        return proxy(method.getReturnType(), statement, (String) args[0]);
+                    }
+                    if (result instanceof Statement statement && method.getName().equals("createStatement")) {
+                        return proxy(Statement.class, statement, null);
+                    }
+                    record(method.getName(), args, sql, batch);
+                    return result;
+                });
+    }
+
+    private void record(String method, Object[] args, String sql, List<String> batch) {
+        if (method.equals("addBatch")) {
+            batch.add(args != null && args.length == 1 ? (String) args[0] : sql);
+        } else if (EXECUTE_METHODS.contains(method)) {
+            roundTrips++;
+            if (method.endsWith("Batch")) {
+                statements.addAll(batch);
+                batch.clear();
+            } else {
+                statements.add(args != null && args.length > 0 ? (String) args[0] : sql);
+            }
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.nnson128.cart_service.repository;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Connection factory that never talks to a server. It records every command issued
+ * through it together with its payload size and the number of network round trips
+ * (a whole pipeline counts as one) so storage layouts can be compared offline.
+ */
+class RecordingRedisConnectionFactory implements RedisConnectionFactory {
+
+    private final List<String> commands = new ArrayList<>();
+    private long payloadBytes;
+    private int roundTrips;
+    private boolean pipelined;
+
+    List<String> commands() {
+        return commands;
+    }
+
+    long payloadBytes() {
+        return payloadBytes;
+    }
+
+    int roundTrips() {
+        return roundTrips;
+    }
+
+    void reset() {
+        commands.clear();
+        payloadBytes = 0;
+        roundTrips = 0;
+        pipelined = false;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return proxy(RedisConnection.class);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return false;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> invoke(proxy, method, args));
+    }
+
+    private Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "openPipeline" -> {
+                pipelined = true;
+                return null;
+            }
+            case "closePipeline" -> {
+                pipelined = false;
+                roundTrips++;
+                return Collections.emptyList();
+            }
+            case "isPipelined" -> {
+                return pipelined;
+            }
+            case "isQueueing", "isClosed" -> {
+                return false;
+            }
+            case "close", "getNativeConnection" -> {
+                return null;
+            }
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            case "equals" -> {
+                return proxy == args[0];
+            }
+            case "toString" -> {
+                return "RecordingRedisConnection";
+            }
+            default -> {
+            }
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType.isInterface() && returnType.getSimpleName().endsWith("Commands")) {
+            return proxy(returnType);
+        }
+
+        commands.add(method.getName().toUpperCase());
+        payloadBytes += method.getName().length() + sizeOf(args);
+        if (!pipelined) {
+            roundTrips++;
+        }
+        return defaultResult(returnType);
+    }
+
+    private static long sizeOf(Object[] args) {
+        long size = 0;
+        if (args != null) {
+            for (Object arg : args) {
+                size += sizeOf(arg);
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(Object arg) {
+        if (arg instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (arg instanceof Object[] array) {
+            return sizeOf(array);
+        }
+        if (arg instanceof Map<?, ?> map) {
+            long size = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        if (arg instanceof Collection<?> collection) {
+            return sizeOf(collection.toArray());
+        }
+        if (arg instanceof String string) {
+            return string.getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (arg instanceof Number number) {
+            return number.toString().length();
+        }
+        return 0;
+    }
+
+    private static Object defaultResult(Class<?> returnType) {
+        if (returnType == Long.class || returnType == long.class) {
+            return 1L;
+        }
+        if (returnType == Integer.class || returnType == int.class) {
+            return 1;
+        }
+        if (returnType == Boolean.class) {
+            return Boolean.TRUE;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (List.class.isAssignableFrom(returnType)) {
+            return Collections.emptyList();
+        }
+        if (Set.class.isAssignableFrom(returnType)) {
+            return Collections.emptySet();
+        }
+        if (Map.class.isAssignableFrom(returnType)) {
+            return Collections.emptyMap();
+        }
+        return null;
+    }
+}
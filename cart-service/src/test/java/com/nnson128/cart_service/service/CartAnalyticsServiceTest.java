@@ -0,0 +1,149 @@
+package com.nnson128.cart_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.dto.AbandonedCartStatsDTO;
+import com.nnson128.cart_service.dto.CartDTO;
+import com.nnson128.cart_service.dto.CartItemDTO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the activity and abandon scripts against a real Redis: idle carts are counted once,
+ * closed carts never, and a day's stats come back from the aggregates alone.
+ */
+class CartAnalyticsServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private CartAnalyticsService analytics;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            redisServer = new RedisServer(port);
+            redisServer.start();
+        } catch (Exception e) {
+            redisServer = null;
+        }
+        assumeTrue(redisServer != null, "embedded Redis is not available on this platform");
+
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        analytics = new CartAnalyticsService(redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(analytics, "enabled", true);
+        ReflectionTestUtils.setField(analytics, "abandonAfterHours", 0L);
+        ReflectionTestUtils.setField(analytics, "sweepBatchSize", 2);
+        ReflectionTestUtils.setField(analytics, "retentionDays", 1L);
+        ReflectionTestUtils.setField(analytics, "maxRangeDays", 92);
+        ReflectionTestUtils.setField(analytics, "zone", ZONE);
+    }
+
+    @Test
+    void idleCartsAreCountedOnceAndClosedCartsNever() throws Exception {
+        analytics.recordActivity("a", cart(item("p1", "100000.00", 2)));
+        analytics.recordActivity("b", cart(item("p1", "100000.00", 1), item("p2", "25000.50", 3)));
+        analytics.recordActivity("c", cart(item("p2", "25000.50", 1)));
+        analytics.recordActivity("d", cart(item("p3", "5000.00", 1)));
+        // "a" changes again and "d" checks out: both replace their earlier activity
+        analytics.recordActivity("a", cart(item("p1", "100000.00", 1)));
+        analytics.recordActivity("d", null);
+        Thread.sleep(5);
+
+        assertThat(analytics.sweep()).isEqualTo(3);
+        assertThat(analytics.sweep()).isZero();
+
+        LocalDate today = LocalDate.now(ZONE);
+        List<AbandonedCartStatsDTO> stats = analytics.getAbandonedStats(today, today, 1);
+        assertThat(stats).hasSize(1);
+        AbandonedCartStatsDTO day = stats.get(0);
+        assertThat(day.getAbandonedCarts()).isEqualTo(3);
+        assertThat(day.getAbandonedUsers()).isEqualTo(3);
+        assertThat(day.getActiveUsers()).isEqualTo(4);
+        assertThat(day.getAbandonedUnits()).isEqualTo(6);
+        assertThat(day.getAbandonedValue()).isEqualByComparingTo("300002.00");
+        assertThat(day.getTopProducts()).singleElement().satisfies(product -> {
+            assertThat(product.getProductId()).isEqualTo("p1");
+            assertThat(product.getUnits()).isEqualTo(2);
+            assertThat(product.getValue()).isEqualByComparingTo("200000.00");
+        });
+    }
+
+    @Test
+    void daysWithoutActivityReadAsZero() {
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        List<AbandonedCartStatsDTO> stats = analytics.getAbandonedStats(day, day.plusDays(2), 10);
+
+        assertThat(stats).extracting(AbandonedCartStatsDTO::getDate)
+                .containsExactly(day, day.plusDays(1), day.plusDays(2));
+        assertThat(stats).allSatisfy(stat -> {
+            assertThat(stat.getAbandonedCarts()).isZero();
+            assertThat(stat.getAbandonedUsers()).isZero();
+            assertThat(stat.getTopProducts()).isEmpty();
+        });
+    }
+
+    private static CartDTO cart(CartItemDTO... items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItemDTO item : items) {
+            total = total.add(item.getSubtotal());
+        }
+        return CartDTO.builder()
+                .items(List.of(items))
+                .totalPrice(total)
+                .totalItems(items.length)
+                .build();
+    }
+
+    private static CartItemDTO item(String productId, String price, int quantity) {
+        return CartItemDTO.builder()
+                .productId(productId)
+                .price(new BigDecimal(price))
+                .quantity(quantity)
+                .subtotal(new BigDecimal(price).multiply(BigDecimal.valueOf(quantity)))
+                .build();
+    }
+}
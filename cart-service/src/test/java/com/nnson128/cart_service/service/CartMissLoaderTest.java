@@ -0,0 +1,99 @@
+package com.nnson128.cart_service.service;
+
+import com.nnson128.cart_service.exception.CartLoadRejectedException;
+import com.nnson128.cart_service.model.CartCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartMissLoaderTest {
+
+    private static final int CALLERS = 32;
+
+    @Test
+    void concurrentMissesForOneUserLoadOnce() throws Exception {
+        CartMissLoader loader = newLoader(8, 2000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch callersWaiting = new CountDownLatch(CALLERS);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Optional<CartCache>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> {
+                    callersWaiting.countDown();
+                    return loader.load("user-1", () -> {
+                        loads.incrementAndGet();
+                        await(release);
+                        return Optional.of(CartCache.builder().userId("user-1").build());
+                    });
+                }));
+            }
+            assertTrue(callersWaiting.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<Optional<CartCache>> result : results) {
+                assertEquals("user-1", result.get(10, TimeUnit.SECONDS).orElseThrow().getUserId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void loadsAcrossUsersAreCapped() throws Exception {
+        CartMissLoader loader = newLoader(2, 100);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                String userId = "slow-" + i;
+                executor.submit(() -> loader.load(userId, () -> {
+                    started.countDown();
+                    await(release);
+                    return Optional.empty();
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            assertThrows(CartLoadRejectedException.class, () -> loader.load("other", Optional::empty));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static CartMissLoader newLoader(int maxConcurrent, long acquireTimeoutMs) {
+        CartMissLoader loader = new CartMissLoader();
+        ReflectionTestUtils.setField(loader, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(loader, "acquireTimeoutMs", acquireTimeoutMs);
+        loader.init();
+        return loader;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
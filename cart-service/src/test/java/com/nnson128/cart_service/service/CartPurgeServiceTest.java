@@ -0,0 +1,92 @@
+package com.nnson128.cart_service.service;
+
+import com.nnson128.cart_service.repository.CartJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the purge against H2 in MySQL mode, with the Redis lock and caches mocked.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart_purge;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartPurgeServiceTest {
+
+    private static final long DAY_MS = Duration.ofDays(1).toMillis();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CartJdbcRepository cartJdbcRepository;
+    private CartPurgeService purgeService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM cart_items");
+        jdbcTemplate.update("DELETE FROM carts");
+
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        cartJdbcRepository = new CartJdbcRepository(jdbcTemplate);
+        purgeService = new CartPurgeService(cartJdbcRepository, mock(CacheService.class),
+                mock(CartWriteBehindService.class), redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(purgeService, "horizonDays", 30L);
+        ReflectionTestUtils.setField(purgeService, "chunkSize", 500);
+        ReflectionTestUtils.setField(purgeService, "pauseMs", 0L);
+        ReflectionTestUtils.setField(purgeService, "maxDurationMs", 60_000L);
+        purgeService.init();
+    }
+
+    @Test
+    void repricingAnAbandonedCartDoesNotKeepItFromThePurge() {
+        long old = System.currentTimeMillis() - 40 * DAY_MS;
+        insertCart("abandoned", old, new BigDecimal("100.00"), 2);
+        insertCart("active", System.currentTimeMillis(), new BigDecimal("100.00"), 1);
+
+        assertThat(cartJdbcRepository.repriceProduct("product-1", "Renamed", new BigDecimal("120.00"), null)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT total_price FROM carts WHERE user_id = 'abandoned'", BigDecimal.class))
+                .isEqualByComparingTo("240.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT updated_at FROM carts WHERE user_id = 'abandoned'", Long.class))
+                .isEqualTo(old);
+
+        assertThat(purgeService.purge()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM carts", String.class)).containsExactly("active");
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM cart_items", String.class)).containsExactly("active");
+    }
+
+    private void insertCart(String userId, long updatedAt, BigDecimal price, int quantity) {
+        jdbcTemplate.update("INSERT INTO carts (user_id, total_price, version, created_at, updated_at) VALUES (?, ?, 1, ?, ?)",
+                userId, price.multiply(BigDecimal.valueOf(quantity)), updatedAt, updatedAt);
+        jdbcTemplate.update("INSERT INTO cart_items (user_id, product_id, product_name, price, quantity, created_at, updated_at) "
+                + "VALUES (?, 'product-1', 'Product', ?, ?, ?, ?)", userId, price, quantity, updatedAt, updatedAt);
+    }
+}
@@ -0,0 +1,161 @@
+package com.nnson128.cart_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.cart_service.dto.ProductResponseDTO;
+import com.nnson128.cart_service.exception.InsufficientStockException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the hold scripts against a real Redis: concurrent carts must never hold more than the
+ * known stock, and released, expired and consumed holds must free or use up their units.
+ */
+class StockReservationServiceTest {
+
+    private static final String PRODUCT_ID = "flash-sale-product";
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private StockReservationService reservations;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            redisServer = new RedisServer(port);
+            redisServer.start();
+        } catch (Exception e) {
+            redisServer = null;
+        }
+        assumeTrue(redisServer != null, "embedded Redis is not available on this platform");
+
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        reservations = new StockReservationService(redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(reservations, "enabled", true);
+        ReflectionTestUtils.setField(reservations, "ttlSeconds", 900L);
+    }
+
+    @Test
+    void concurrentCartsNeverHoldMoreThanTheStock() throws Exception {
+        int stock = 10;
+        int users = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String userId = "user-" + i;
+            attempts.add(executor.submit(() -> {
+                start.await();
+                try {
+                    reservations.reserve(userId, Map.of(PRODUCT_ID, 1), Map.of(PRODUCT_ID, product(stock)));
+                    return true;
+                } catch (InsufficientStockException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int held = 0;
+        for (Future<Boolean> attempt : attempts) {
+            held += attempt.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertThat(held).isEqualTo(stock);
+        assertThat(reservations.available(List.of(PRODUCT_ID))).containsEntry(PRODUCT_ID, 0);
+
+        reservations.release("user-0", List.of(PRODUCT_ID));
+        assertThat(reservations.available(List.of(PRODUCT_ID))).containsEntry(PRODUCT_ID, 1);
+    }
+
+    @Test
+    void rejectedChangeKeepsEveryHoldAndReportsWhatIsLeft() {
+        reservations.reserve("a", Map.of(PRODUCT_ID, 4), Map.of(PRODUCT_ID, product(5)));
+
+        assertThatThrownBy(() -> reservations.reserve("b", Map.of(PRODUCT_ID, 2, "other", 1),
+                Map.of(PRODUCT_ID, product(5))))
+                .isInstanceOfSatisfying(InsufficientStockException.class,
+                        e -> assertThat(e.getAvailable()).containsExactly(Map.entry(PRODUCT_ID, 1)));
+        assertThat(reservations.available(List.of(PRODUCT_ID, "other"))).containsExactly(Map.entry(PRODUCT_ID, 1));
+
+        // Lowering a hold never needs stock, and a failed change can put the old hold back
+        Map<String, Integer> previous = reservations.reserve("a", Map.of(PRODUCT_ID, 1), Map.of());
+        assertThat(previous).containsExactly(Map.entry(PRODUCT_ID, 4));
+        reservations.restore("a", previous);
+        assertThat(reservations.available(List.of(PRODUCT_ID))).containsEntry(PRODUCT_ID, 1);
+    }
+
+    @Test
+    void consumedHoldsLowerTheStockAndExpiredHoldsFreeIt() throws Exception {
+        ReflectionTestUtils.setField(reservations, "ttlSeconds", 1L);
+        reservations.reserve("early", Map.of(PRODUCT_ID, 3), Map.of(PRODUCT_ID, product(5)));
+        Thread.sleep(600);
+        reservations.reserve("buyer", Map.of(PRODUCT_ID, 2), Map.of(PRODUCT_ID, product(5)));
+        Thread.sleep(600);
+
+        // "early" has expired while "buyer" still holds 2
+        reservations.reserve("late", Map.of(PRODUCT_ID, 3), Map.of(PRODUCT_ID, product(5)));
+        assertThat(reservations.consume("buyer")).containsExactly(Map.entry(PRODUCT_ID, 2));
+        assertThat(reservations.available(List.of(PRODUCT_ID))).containsEntry(PRODUCT_ID, 0);
+        assertThat(reservations.consume("buyer")).isEmpty();
+    }
+
+    private static ProductResponseDTO product(int stock) {
+        return ProductResponseDTO.builder()
+                .id(PRODUCT_ID)
+                .name("Flash sale product")
+                .price(new BigDecimal("99000.00"))
+                .status("ACTIVE")
+                .stock(stock)
+                .updatedAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .build();
+    }
+}
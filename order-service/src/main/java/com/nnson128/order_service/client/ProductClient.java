@@ -9,6 +9,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -20,6 +28,41 @@ public class ProductClient {
     @Value("${product.service.url:http://product-service:9001}")
     private String productServiceUrl;
 
+    @Value("${product.service.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * Look up several products with one POST /api/v1/products/batch call per {@code batch-size} ids.
+     * Products that do not exist are left out of the result.
+     */
+    public Map<String, ProductResponseDTO> getProductsByIds(Collection<String> productIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<String, ProductResponseDTO> products = new LinkedHashMap<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            try {
+                String url = productServiceUrl + "/api/v1/products/batch";
+                log.debug("Calling Product Service: {} for {} products", url, chunk.size());
+
+                JsonNode response = restTemplate.postForObject(url, Map.of("ids", chunk), JsonNode.class);
+                if (response == null || !response.path("success").asBoolean() || !response.path("data").has("products")) {
+                    throw new IllegalStateException("Invalid batch response from Product Service");
+                }
+                Iterator<Map.Entry<String, JsonNode>> fields = response.path("data").path("products").fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (!field.getValue().isNull()) {
+                        products.put(field.getKey(), objectMapper.treeToValue(field.getValue(), ProductResponseDTO.class));
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Error calling Product Service for {} products", chunk.size(), e);
+                throw new RuntimeException("Failed to get product details for " + chunk.size() + " products", e);
+            }
+        }
+        return products;
+    }
+
     public ProductResponseDTO getProductById(String productId) {
         try {
             String url = productServiceUrl + "/api/v1/products/" + productId;
@@ -2,6 +2,7 @@ package com.nnson128.order_service.controller;
 
 import com.nnson128.order_service.dto.ApiResponse;
 import com.nnson128.order_service.dto.CreateOrderRequestDTO;
+import com.nnson128.order_service.dto.CursorPageDTO;
 import com.nnson128.order_service.dto.OrderResponseDTO;
 import com.nnson128.order_service.service.OrderService;
 import lombok.RequiredArgsConstructor;
@@ -62,6 +63,22 @@ public class OrderController {
                 .build());
     }
 
+    // Keyset listing: pass the previous page's nextCursor as after
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<CursorPageDTO<OrderResponseDTO>>> getUserOrdersByCursor(
+            Authentication authentication,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        String userId = authentication.getName();
+        CursorPageDTO<OrderResponseDTO> data = orderService.getUserOrders(userId, after, size, includeTotal);
+        return ResponseEntity.ok(ApiResponse.<CursorPageDTO<OrderResponseDTO>>builder()
+                .success(true)
+                .message("Get user orders successfully")
+                .data(data)
+                .build());
+    }
+
     @GetMapping("/admin/all")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse<Page<OrderResponseDTO>>> getAllOrders(
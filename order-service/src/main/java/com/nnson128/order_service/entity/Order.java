@@ -12,7 +12,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_user_created_at_id", columnList = "user_id, created_at, id"))
 @Data
 @Builder
 @NoArgsConstructor
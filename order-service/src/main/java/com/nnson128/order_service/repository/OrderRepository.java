@@ -4,8 +4,11 @@ import com.nnson128.order_service.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -13,4 +16,15 @@ public interface OrderRepository extends JpaRepository<Order, String> {
     Page<Order> findByUserId(String userId, Pageable pageable);
     List<Order> findByStatus(String status);
     Page<Order> findByUserIdAndStatusOrderByCreatedAtDesc(String userId, String status, Pageable pageable);
+    long countByUserId(String userId);
+
+    // Keyset pages of a user's orders newest first over (createdAt, id); the Pageable only limits
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findNewestByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId"
+            + " AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id))"
+            + " ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findNewestByUserIdBefore(@Param("userId") String userId, @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") String id, Pageable pageable);
 }
@@ -3,8 +3,10 @@ package com.nnson128.order_service.service;
 import com.nnson128.order_service.client.ProductClient;
 import com.nnson128.order_service.dto.CreateOrderRequestDTO;
 import com.nnson128.order_service.dto.CreateOrderItemRequest;
+import com.nnson128.order_service.dto.CursorPageDTO;
 import com.nnson128.order_service.dto.OrderItemDTO;
 import com.nnson128.order_service.dto.OrderResponseDTO;
+import com.nnson128.order_service.dto.PageCursor;
 import com.nnson128.order_service.dto.ProductResponseDTO;
 import com.nnson128.order_service.entity.Order;
 import com.nnson128.order_service.entity.OrderItem;
@@ -21,6 +23,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -39,20 +42,18 @@ public class OrderService {
             throw new RuntimeException("Order must contain at least one item");
         }
 
-        // Validate and fetch all products first
+        // Validate and fetch all products first, in one batch call
+        Map<String, ProductResponseDTO> productsById = productClient.getProductsByIds(request.getItems().stream()
+                .map(CreateOrderItemRequest::getProductId)
+                .toList());
         List<ProductResponseDTO> products = new ArrayList<>();
         for (CreateOrderItemRequest itemRequest : request.getItems()) {
-            try {
-                ProductResponseDTO product = productClient.getProductById(itemRequest.getProductId());
-                if (product == null) {
-                    log.error("Product not found: {}", itemRequest.getProductId());
-                    throw new RuntimeException("Product not found: " + itemRequest.getProductId());
-                }
-                products.add(product);
-            } catch (Exception e) {
-                log.error("Failed to fetch product details for productId: {}", itemRequest.getProductId(), e);
-                throw new RuntimeException("Failed to fetch product details for productId: " + itemRequest.getProductId(), e);
+            ProductResponseDTO product = productsById.get(itemRequest.getProductId());
+            if (product == null) {
+                log.error("Product not found: {}", itemRequest.getProductId());
+                throw new RuntimeException("Product not found: " + itemRequest.getProductId());
             }
+            products.add(product);
         }
 
         // Calculate total price
@@ -118,6 +119,28 @@ public class OrderService {
         return orderRepository.findByUserId(userId, pageable).map(this::mapToDTO);
     }
 
+    // Get user orders by keyset cursor, newest first; the total is only counted on request
+    @Transactional(readOnly = true)
+    public CursorPageDTO<OrderResponseDTO> getUserOrders(String userId, String after, int size, boolean includeTotal) {
+        PageCursor.validateSize(size);
+        PageCursor cursor = PageCursor.decode(after);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Order> rows = cursor == null
+                ? orderRepository.findNewestByUserId(userId, limit)
+                : orderRepository.findNewestByUserIdBefore(userId, cursor.createdAt(), cursor.id(), limit);
+
+        boolean hasNext = rows.size() > size;
+        List<Order> content = hasNext ? rows.subList(0, size) : rows;
+        Order last = content.isEmpty() ? null : content.get(content.size() - 1);
+        return CursorPageDTO.<OrderResponseDTO>builder()
+                .content(content.stream().map(this::mapToDTO).collect(Collectors.toList()))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? new PageCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .totalElements(includeTotal ? orderRepository.countByUserId(userId) : null)
+                .build();
+    }
+
     // Get all orders (admin)
     public Page<OrderResponseDTO> getAllOrders(int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
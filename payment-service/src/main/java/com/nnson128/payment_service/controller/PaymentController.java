@@ -122,6 +122,21 @@ public class PaymentController {
                 .build());
     }
 
+    // Keyset listing for exports: pass the previous page's nextCursor as after
+    @GetMapping("/admin/all/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<CursorPageDTO<PaymentResponseDTO>>> getAllPaymentsByCursor(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPageDTO<PaymentResponseDTO> data = paymentService.getAllPayments(after, size, includeTotal);
+        return ResponseEntity.ok(ApiResponse.<CursorPageDTO<PaymentResponseDTO>>builder()
+                .success(true)
+                .message("Get all payments successfully")
+                .data(data)
+                .build());
+    }
+
     @GetMapping("/admin/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse<List<PaymentResponseDTO>>> getPaymentsByStatus(@PathVariable String status) {
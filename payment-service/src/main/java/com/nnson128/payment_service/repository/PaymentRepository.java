@@ -4,8 +4,11 @@ import com.nnson128.payment_service.entity.Payment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,5 +23,14 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     List<Payment> findByStatus(String status);
     
     List<Payment> findByPaymentMethod(String paymentMethod);
+
+    // Keyset pages newest first over (createdAt, id); the Pageable only limits, no count query is run
+    @Query("SELECT p FROM Payment p ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findNewest(Pageable pageable);
+
+    @Query("SELECT p FROM Payment p WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)"
+            + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findNewestBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") String id,
+                                   Pageable pageable);
 }
 
@@ -1,7 +1,9 @@
 package com.nnson128.payment_service.service;
 
 import com.nnson128.payment_service.client.OrderClient;
+import com.nnson128.payment_service.dto.CursorPageDTO;
 import com.nnson128.payment_service.dto.OrderResponseDTO;
+import com.nnson128.payment_service.dto.PageCursor;
 import com.nnson128.payment_service.dto.PaymentMethodRevenueDTO;
 import com.nnson128.payment_service.dto.PaymentRequestDTO;
 import com.nnson128.payment_service.dto.PaymentResponseDTO;
@@ -11,6 +13,7 @@ import com.nnson128.payment_service.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -155,6 +158,28 @@ public class PaymentService {
                 .map(this::mapToDTO);
     }
 
+    // Get all payments by keyset cursor, newest first (admin); the total is only counted on request
+    @Transactional(readOnly = true)
+    public CursorPageDTO<PaymentResponseDTO> getAllPayments(String after, int size, boolean includeTotal) {
+        PageCursor.validateSize(size);
+        PageCursor cursor = PageCursor.decode(after);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Payment> rows = cursor == null
+                ? paymentRepository.findNewest(limit)
+                : paymentRepository.findNewestBefore(cursor.createdAt(), cursor.id(), limit);
+
+        boolean hasNext = rows.size() > size;
+        List<Payment> content = hasNext ? rows.subList(0, size) : rows;
+        Payment last = content.isEmpty() ? null : content.get(content.size() - 1);
+        return CursorPageDTO.<PaymentResponseDTO>builder()
+                .content(content.stream().map(this::mapToDTO).collect(Collectors.toList()))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? new PageCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .totalElements(includeTotal ? paymentRepository.count() : null)
+                .build();
+    }
+
     // ==================== STATISTICS & FILTERS ====================
 
     // Get payments by status
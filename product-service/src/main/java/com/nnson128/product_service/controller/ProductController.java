@@ -2,18 +2,32 @@ package com.nnson128.product_service.controller;
 
 import com.nnson128.product_service.dto.ApiResponse;
 import com.nnson128.product_service.dto.BulkDeleteRequestDTO;
-import com.nnson128.product_service.dto.BulkImportProductRequestDTO;
 import com.nnson128.product_service.dto.BulkImportResponseDTO;
+import com.nnson128.product_service.dto.CursorPageDTO;
+import com.nnson128.product_service.dto.FlashSaleDTO;
+import com.nnson128.product_service.dto.ImportJobDTO;
+import com.nnson128.product_service.dto.ProductBatchRequestDTO;
+import com.nnson128.product_service.dto.ProductBatchResponseDTO;
+import com.nnson128.product_service.dto.ProductCacheStatsDTO;
 import com.nnson128.product_service.dto.ProductRequestDTO;
 import com.nnson128.product_service.dto.ProductResponseDTO;
+import com.nnson128.product_service.dto.ProductSummaryDTO;
+import com.nnson128.product_service.dto.StockBatchRequestDTO;
+import com.nnson128.product_service.dto.StockBatchResultDTO;
+import com.nnson128.product_service.service.FlashSaleService;
+import com.nnson128.product_service.service.ProductImportService;
 import com.nnson128.product_service.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/products")
@@ -21,6 +35,8 @@ import org.springframework.web.bind.annotation.*;
 public class ProductController {
 
     private final ProductService productService;
+    private final FlashSaleService flashSaleService;
+    private final ProductImportService productImportService;
 
     @GetMapping
     public ResponseEntity<ApiResponse<Page<ProductResponseDTO>>> getAllProducts(
@@ -34,6 +50,33 @@ public class ProductController {
                 .build());
     }
 
+    // Grid/list view: summary fields only, full products come from /{id}
+    @GetMapping("/summary")
+    public ResponseEntity<ApiResponse<Page<ProductSummaryDTO>>> getProductSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        Page<ProductSummaryDTO> data = productService.getProductSummaries(page, size);
+        return ResponseEntity.ok(ApiResponse.<Page<ProductSummaryDTO>>builder()
+                .success(true)
+                .message("Get product summaries successfully")
+                .data(data)
+                .build());
+    }
+
+    // Keyset listing of summaries: pass the previous page's nextCursor as after
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<CursorPageDTO<ProductSummaryDTO>>> getAllProductsByCursor(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        CursorPageDTO<ProductSummaryDTO> data = productService.getAllProducts(after, size, includeTotal);
+        return ResponseEntity.ok(ApiResponse.<CursorPageDTO<ProductSummaryDTO>>builder()
+                .success(true)
+                .message("Get all products successfully")
+                .data(data)
+                .build());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<ProductResponseDTO>> getProductById(@PathVariable String id) {
         ProductResponseDTO data = productService.getProductById(id);
@@ -44,6 +87,16 @@ public class ProductController {
                 .build());
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<ProductBatchResponseDTO>> getProductsBatch(@RequestBody ProductBatchRequestDTO request) {
+        ProductBatchResponseDTO data = productService.getProductsBatch(request.getIds());
+        return ResponseEntity.ok(ApiResponse.<ProductBatchResponseDTO>builder()
+                .success(true)
+                .message("Get products successfully")
+                .data(data)
+                .build());
+    }
+
     @GetMapping("/search")
     public ResponseEntity<ApiResponse<Page<ProductResponseDTO>>> searchProducts(
             @RequestParam String keyword,
@@ -116,6 +169,56 @@ public class ProductController {
                 .build());
     }
 
+    // Decrease stock for all lines of an order at once; nothing is taken unless every line can be served
+    @PostMapping("/stock/decrease-batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<StockBatchResultDTO>> decreaseStockBatch(
+            @RequestBody StockBatchRequestDTO request) {
+        StockBatchResultDTO data = productService.decreaseStockBatch(request.getLines());
+        return ResponseEntity.status(data.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<StockBatchResultDTO>builder()
+                        .success(data.isSuccess())
+                        .message(data.isSuccess() ? "Stock decreased successfully" : data.getReason())
+                        .data(data)
+                        .build());
+    }
+
+    // Flash-sale mode: stock is taken from Redis sub-counters and applied to the product asynchronously
+    @PostMapping("/{id}/flash-sale")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<FlashSaleDTO>> startFlashSale(
+            @PathVariable String id,
+            @RequestParam(required = false) Integer shards) {
+        FlashSaleDTO data = flashSaleService.start(id, shards);
+        return ResponseEntity.ok(ApiResponse.<FlashSaleDTO>builder()
+                .success(true)
+                .message("Flash sale started successfully")
+                .data(data)
+                .build());
+    }
+
+    @DeleteMapping("/{id}/flash-sale")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<FlashSaleDTO>> stopFlashSale(@PathVariable String id) {
+        FlashSaleDTO data = flashSaleService.stop(id);
+        return ResponseEntity.ok(ApiResponse.<FlashSaleDTO>builder()
+                .success(true)
+                .message("Flash sale stopped successfully")
+                .data(data)
+                .build());
+    }
+
+    @GetMapping("/admin/flash-sales")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<FlashSaleDTO>>> getFlashSales() {
+        List<FlashSaleDTO> data = flashSaleService.getFlashSales();
+        return ResponseEntity.ok(ApiResponse.<List<FlashSaleDTO>>builder()
+                .success(true)
+                .message("Get flash sales successfully")
+                .data(data)
+                .build());
+    }
+
     @PostMapping("/{id}/increase-stock")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse<Object>> increaseStock(
@@ -139,10 +242,11 @@ public class ProductController {
                 .build());
     }
 
+    // Body: {"products": [...]}, read as a stream and imported in chunks
     @PostMapping("/import")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<BulkImportResponseDTO>> bulkImportProducts(@RequestBody BulkImportProductRequestDTO request) {
-        BulkImportResponseDTO result = productService.bulkImportProducts(request);
+    public ResponseEntity<ApiResponse<BulkImportResponseDTO>> bulkImportProducts(InputStream body) {
+        BulkImportResponseDTO result = productImportService.importProducts(body);
         return ResponseEntity.ok(ApiResponse.<BulkImportResponseDTO>builder()
                 .success(result.getFailCount() == 0)
                 .message(result.getSuccessCount() + " products imported successfully" + 
@@ -151,6 +255,40 @@ public class ProductController {
                 .build());
     }
 
+    // Same body as /import, imported in the background; poll the returned job for progress
+    @PostMapping("/import/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobDTO>> submitImportJob(InputStream body) {
+        ImportJobDTO data = productImportService.submit(body);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.<ImportJobDTO>builder()
+                .success(true)
+                .message("Product import started")
+                .data(data)
+                .build());
+    }
+
+    @GetMapping("/import/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ImportJobDTO>> getImportJob(@PathVariable String jobId) {
+        ImportJobDTO data = productImportService.getJob(jobId);
+        return ResponseEntity.ok(ApiResponse.<ImportJobDTO>builder()
+                .success(true)
+                .message("Get import job successfully")
+                .data(data)
+                .build());
+    }
+
+    @GetMapping("/admin/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<ProductCacheStatsDTO>>> getCacheStats() {
+        List<ProductCacheStatsDTO> data = productService.getCacheStats();
+        return ResponseEntity.ok(ApiResponse.<List<ProductCacheStatsDTO>>builder()
+                .success(true)
+                .message("Get product cache stats successfully")
+                .data(data)
+                .build());
+    }
+
     @GetMapping("/{id}/check-stock")
     public ResponseEntity<ApiResponse<Boolean>> checkStock(
             @PathVariable String id,
@@ -22,6 +22,7 @@ public class BulkImportResponseDTO {
     @NoArgsConstructor
     @AllArgsConstructor
     public static class ImportErrorDTO {
+        private Integer row; // 1-based position in the import
         private String productName;
         private String errorMessage;
     }
@@ -0,0 +1,21 @@
+package com.nnson128.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A product in flash-sale mode: stock left across its sub-counters, and units sold
+ * but not yet applied to the product's stock.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashSaleDTO {
+    private String productId;
+    private int shards;
+    private long availableStock;
+    private long unreconciledSold;
+}
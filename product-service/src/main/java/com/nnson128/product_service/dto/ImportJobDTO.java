@@ -0,0 +1,24 @@
+package com.nnson128.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A background product import. While it runs, result counts the products read so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobDTO {
+    private String jobId;
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+    private String message;
+    private BulkImportResponseDTO result;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -11,6 +11,6 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class BulkImportProductRequestDTO {
-    private List<ProductRequestDTO> products;
+public class ProductBatchRequestDTO {
+    private List<String> ids;
 }
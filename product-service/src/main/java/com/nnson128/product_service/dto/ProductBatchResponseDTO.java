@@ -0,0 +1,22 @@
+package com.nnson128.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every requested id is a key of {@code products}; ids that do not exist map to null
+ * and are also listed in {@code notFoundIds}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchResponseDTO {
+    private Map<String, ProductResponseDTO> products;
+    private List<String> notFoundIds;
+}
@@ -0,0 +1,17 @@
+package com.nnson128.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCacheStatsDTO {
+    private String tier;
+    private Long hits;
+    private Long misses;
+    private Double hitRatio;
+}
@@ -0,0 +1,30 @@
+package com.nnson128.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Product as shown in grids and lists, read straight from the query without loading entities.
+ * Constructor order matches {@code ProductRepository.SUMMARY_SELECT}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSummaryDTO {
+    private String id;
+    private String name;
+    private BigDecimal price;
+    private BigDecimal originalPrice;
+    private String imageUrl;
+    private Double rating;
+    private String status;
+    private String categoryId;
+    private String categoryName;
+    private LocalDateTime createdAt;
+}
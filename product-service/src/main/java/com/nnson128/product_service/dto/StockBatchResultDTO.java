@@ -0,0 +1,20 @@
+package com.nnson128.product_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a batch stock decrease. On failure nothing was taken, and
+ * {@code failedProductId} is the first line that could not be served.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBatchResultDTO {
+    private boolean success;
+    private String failedProductId;
+    private String reason;
+}
@@ -12,7 +12,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = @Index(name = "idx_products_created_at_id", columnList = "created_at, id"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -43,7 +43,7 @@ public class Product {
     @Column(length = 500)
     private String imageUrl;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
 
@@ -58,6 +58,11 @@ public class Product {
     @Builder.Default
     private Integer reviewCount = 0;
 
+    // Stock is taken from Redis sub-counters (FlashSaleLedger) and applied here asynchronously
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean flashSale = false;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,219 @@
+package com.nnson128.product_service.grpc;
+
+import com.nnson128.grpc.product.CheckStockRequest;
+import com.nnson128.grpc.product.DecreaseStockBatchRequest;
+import com.nnson128.grpc.product.DecreaseStockBatchResponse;
+import com.nnson128.grpc.product.GetProductRequest;
+import com.nnson128.grpc.product.GetProductsBatchRequest;
+import com.nnson128.grpc.product.GetProductsBatchResponse;
+import com.nnson128.grpc.product.ProductMessage;
+import com.nnson128.grpc.product.ProductServiceGrpc;
+import com.nnson128.grpc.product.StockMessage;
+import com.nnson128.grpc.product.StreamProductsRequest;
+import com.nnson128.product_service.dto.ProductResponseDTO;
+import com.nnson128.product_service.dto.StockBatchRequestDTO;
+import com.nnson128.product_service.dto.StockBatchResultDTO;
+import com.nnson128.product_service.service.ProductService;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Internal product reads for other services. Single and batch lookups go through the product cache;
+ * stock checks read the database and DecreaseStockBatch takes an order's stock in one transaction.
+ * StreamProducts pages through the catalog in id order and waits for the client to catch up
+ * before sending the next page.
+ */
+@Slf4j
+@GrpcService
+@RequiredArgsConstructor
+public class ProductGrpcService extends ProductServiceGrpc.ProductServiceImplBase {
+
+    private final ProductService productService;
+
+    @Value("${product.grpc.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${product.grpc.stream-page-size:200}")
+    private int streamPageSize;
+
+    @Override
+    public void getProductInfo(GetProductRequest request, StreamObserver<ProductMessage> responseObserver) {
+        if (request.getProductId().isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("product_id is required").asRuntimeException());
+            return;
+        }
+        try {
+            ProductResponseDTO product = productService.getProductsByIds(List.of(request.getProductId()))
+                    .get(request.getProductId());
+            if (product == null) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Product not found").asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(toMessage(product));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("gRPC GetProductInfo failed for productId: {}", request.getProductId(), e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void checkProductStock(CheckStockRequest request, StreamObserver<StockMessage> responseObserver) {
+        if (request.getProductId().isBlank()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("product_id is required").asRuntimeException());
+            return;
+        }
+        ProductResponseDTO product;
+        try {
+            product = productService.getProductUncached(request.getProductId());
+        } catch (RuntimeException e) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        int stock = product.getStock() != null ? product.getStock() : 0;
+        responseObserver.onNext(StockMessage.newBuilder()
+                .setAvailable(stock >= request.getQuantity() && "ACTIVE".equals(product.getStatus()))
+                .setCurrentStock(stock)
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getProductsBatch(GetProductsBatchRequest request,
+                                 StreamObserver<GetProductsBatchResponse> responseObserver) {
+        if (request.getProductIdsCount() > maxBatchSize) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At most " + maxBatchSize + " product_ids per call").asRuntimeException());
+            return;
+        }
+        try {
+            Map<String, ProductResponseDTO> products = productService.getProductsByIds(request.getProductIdsList());
+            GetProductsBatchResponse.Builder response = GetProductsBatchResponse.newBuilder();
+            for (String productId : request.getProductIdsList()) {
+                ProductResponseDTO product = products.get(productId);
+                if (product != null) {
+                    response.addProducts(toMessage(product));
+                } else {
+                    response.addNotFoundIds(productId);
+                }
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("gRPC GetProductsBatch failed", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void decreaseStockBatch(DecreaseStockBatchRequest request,
+                                   StreamObserver<DecreaseStockBatchResponse> responseObserver) {
+        List<StockBatchRequestDTO.StockLine> lines = request.getLinesList().stream()
+                .map(line -> StockBatchRequestDTO.StockLine.builder()
+                        .productId(line.getProductId())
+                        .quantity(line.getQuantity())
+                        .build())
+                .toList();
+        StockBatchResultDTO result;
+        try {
+            result = productService.decreaseStockBatch(lines);
+        } catch (DataAccessException e) {
+            log.error("gRPC DecreaseStockBatch failed", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        } catch (RuntimeException e) {
+            // Rejected before any stock was taken: empty, oversized or malformed lines
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        DecreaseStockBatchResponse.Builder response = DecreaseStockBatchResponse.newBuilder()
+                .setSuccess(result.isSuccess());
+        if (!result.isSuccess()) {
+            response.setFailedProductId(result.getFailedProductId())
+                    .setReason(result.getReason());
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void streamProducts(StreamProductsRequest request, StreamObserver<ProductMessage> responseObserver) {
+        ServerCallStreamObserver<ProductMessage> call = (ServerCallStreamObserver<ProductMessage>) responseObserver;
+        Object ready = new Object();
+        call.setOnReadyHandler(() -> {
+            synchronized (ready) {
+                ready.notifyAll();
+            }
+        });
+        String status = request.getStatus().isBlank() ? null : request.getStatus();
+        String categoryId = request.getCategoryId().isBlank() ? null : request.getCategoryId();
+        String afterId = request.getAfterId();
+        int sent = 0;
+        try {
+            while (awaitReady(call, ready)) {
+                List<ProductResponseDTO> page = productService.getProductsAfter(afterId, status, categoryId, streamPageSize);
+                for (ProductResponseDTO product : page) {
+                    call.onNext(toMessage(product));
+                }
+                sent += page.size();
+                if (page.size() < streamPageSize) {
+                    call.onCompleted();
+                    return;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+            log.debug("gRPC StreamProducts cancelled by the client after {} products", sent);
+        } catch (Exception e) {
+            log.error("gRPC StreamProducts failed after {} products", sent, e);
+            call.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    /**
+     * Block until the client can take more messages; false once the call is cancelled
+     */
+    private static boolean awaitReady(ServerCallStreamObserver<?> call, Object ready) throws InterruptedException {
+        synchronized (ready) {
+            while (!call.isReady() && !call.isCancelled()) {
+                ready.wait(100);
+            }
+        }
+        return !call.isCancelled();
+    }
+
+    private static ProductMessage toMessage(ProductResponseDTO product) {
+        ProductMessage.Builder message = ProductMessage.newBuilder()
+                .setId(product.getId())
+                .setName(product.getName())
+                .setStock(product.getStock() != null ? product.getStock() : 0);
+        if (product.getDescription() != null) {
+            message.setDescription(product.getDescription());
+        }
+        if (product.getPrice() != null) {
+            message.setPrice(product.getPrice().toPlainString());
+        }
+        if (product.getCategory() != null && product.getCategory().getName() != null) {
+            message.setCategory(product.getCategory().getName());
+        }
+        if (product.getStatus() != null) {
+            message.setStatus(product.getStatus());
+        }
+        if (product.getImageUrl() != null) {
+            message.setImageUrl(product.getImageUrl());
+        }
+        if (product.getUpdatedAt() != null) {
+            message.setUpdatedAt(product.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        return message.build();
+    }
+}
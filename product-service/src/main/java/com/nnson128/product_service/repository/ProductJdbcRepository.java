@@ -0,0 +1,56 @@
+package com.nnson128.product_service.repository;
+
+import com.nnson128.product_service.entity.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batched JDBC inserts of new products, used by the bulk import instead of per-product JPA saves.
+ * With rewriteBatchedStatements=true the driver sends each batch as multi-row INSERTs.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductJdbcRepository {
+
+    private static final String INSERT_PRODUCT =
+            "INSERT INTO products (id, name, description, price, original_price, stock, sku, image_url, category_id, "
+                    + "status, rating, review_count, flash_sale, created_at, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert the products as one batch. Ids and timestamps must already be set.
+     */
+    public void insertAll(List<Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(products.size());
+        for (Product product : products) {
+            rows.add(new Object[]{
+                    product.getId(),
+                    product.getName(),
+                    product.getDescription(),
+                    product.getPrice(),
+                    product.getOriginalPrice(),
+                    product.getStock(),
+                    product.getSku(),
+                    product.getImageUrl(),
+                    product.getCategory().getId(),
+                    product.getStatus(),
+                    product.getRating(),
+                    product.getReviewCount(),
+                    product.getFlashSale(),
+                    Timestamp.valueOf(product.getCreatedAt()),
+                    Timestamp.valueOf(product.getUpdatedAt())
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, rows);
+    }
+}
@@ -1,20 +1,134 @@
 package com.nnson128.product_service.repository;
 
+import com.nnson128.product_service.dto.ProductSummaryDTO;
+import com.nnson128.product_service.entity.Category;
 import com.nnson128.product_service.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, String> {
+    // Summary columns and category in one query, no entities loaded
+    String SUMMARY_SELECT = "SELECT new com.nnson128.product_service.dto.ProductSummaryDTO("
+            + "p.id, p.name, p.price, p.originalPrice, p.imageUrl, p.rating, p.status, c.id, c.name, p.createdAt)"
+            + " FROM Product p JOIN p.category c";
+
+    @EntityGraph(attributePaths = "category")
+    Page<Product> findAll(Pageable pageable);
+    @EntityGraph(attributePaths = "category")
     Page<Product> findByCategory(String category, Pageable pageable);
+    @EntityGraph(attributePaths = "category")
     Page<Product> findByNameContainingIgnoreCase(String name, Pageable pageable);
     List<Product> findByStatus(String status);
+    @EntityGraph(attributePaths = "category")
     Page<Product> findByStatusAndCategoryOrderByCreatedAtDesc(String status, String category, Pageable pageable);
+
+    // Single product with its category, for detail reads
+    @Query("SELECT p FROM Product p JOIN FETCH p.category WHERE p.id = :id")
+    Optional<Product> findWithCategoryById(@Param("id") String id);
     
     // Delete products by IDs
     long deleteByIdIn(List<String> ids);
+
+    // Products by IDs with their category in the same query
+    @Query("SELECT p FROM Product p JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<String> ids);
+
+    // IDs of the products in a category
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+    List<String> findIdsByCategoryId(@Param("categoryId") String categoryId);
+
+    // Keyset page in id order for streaming the catalog; null filters match everything
+    @Query("SELECT p FROM Product p JOIN FETCH p.category c WHERE p.id > :afterId"
+            + " AND (:status IS NULL OR p.status = :status)"
+            + " AND (:categoryId IS NULL OR c.id = :categoryId)"
+            + " ORDER BY p.id")
+    List<Product> findPageAfter(@Param("afterId") String afterId, @Param("status") String status,
+                                @Param("categoryId") String categoryId, Pageable pageable);
+
+    // Conditional stock updates: one statement each, returning 0 when the product is missing or the condition fails.
+    // Takes stock and leaves some behind; flash-sale stock is taken in Redis instead
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity, p.updatedAt = LOCAL DATETIME"
+            + " WHERE p.id = :id AND p.stock > :quantity AND p.flashSale = false")
+    int takeStock(@Param("id") String id, @Param("quantity") int quantity);
+
+    // Takes exactly the remaining stock and marks the product sold out
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = 0, p.status = 'OUT_OF_STOCK', p.updatedAt = LOCAL DATETIME"
+            + " WHERE p.id = :id AND p.stock = :quantity AND p.flashSale = false")
+    int takeLastStock(@Param("id") String id, @Param("quantity") int quantity);
+
+    // Adds stock to a sold-out product and puts it back on sale
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity, p.status = 'ACTIVE', p.updatedAt = LOCAL DATETIME"
+            + " WHERE p.id = :id AND p.status = 'OUT_OF_STOCK'")
+    int restock(@Param("id") String id, @Param("quantity") int quantity);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity, p.updatedAt = LOCAL DATETIME WHERE p.id = :id")
+    int addStock(@Param("id") String id, @Param("quantity") int quantity);
+
+    // Sets the stock from an admin edit; never applied to a flash-sale product, whose stock lives in Redis
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = :stock, p.updatedAt = LOCAL DATETIME WHERE p.id = :id AND p.flashSale = false")
+    int setStock(@Param("id") String id, @Param("stock") int stock);
+
+    // Writes the editable details only, so stock and flash-sale mode changed since the row was read are kept
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.name = :name, p.description = :description, p.price = :price,"
+            + " p.originalPrice = :originalPrice, p.sku = :sku, p.imageUrl = :imageUrl, p.category = :category,"
+            + " p.updatedAt = LOCAL DATETIME WHERE p.id = :id")
+    int updateDetails(@Param("id") String id, @Param("name") String name, @Param("description") String description,
+                      @Param("price") BigDecimal price, @Param("originalPrice") BigDecimal originalPrice,
+                      @Param("sku") String sku, @Param("imageUrl") String imageUrl, @Param("category") Category category);
+
+    @Query("SELECT p.flashSale FROM Product p WHERE p.id = :id")
+    Optional<Boolean> findFlashSaleById(@Param("id") String id);
+
+    @Query("SELECT p.stock FROM Product p WHERE p.id = :id")
+    Optional<Integer> findStockById(@Param("id") String id);
+
+    // Switches the product to flash-sale mode; the row stays locked until commit, so no row update can slip in
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.flashSale = true WHERE p.id = :id AND p.flashSale = false")
+    int startFlashSale(@Param("id") String id);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.flashSale = false WHERE p.id = :id AND p.flashSale = true")
+    int endFlashSale(@Param("id") String id);
+
+    // Applies units sold in a flash sale, already taken in Redis: never below zero, sold out at zero.
+    // Status is assigned first so it sees the stock before the update on MySQL too.
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.status = CASE WHEN p.stock <= :sold THEN 'OUT_OF_STOCK' ELSE p.status END,"
+            + " p.stock = CASE WHEN p.stock <= :sold THEN 0 ELSE p.stock - :sold END, p.updatedAt = LOCAL DATETIME"
+            + " WHERE p.id = :id")
+    int applyFlashSales(@Param("id") String id, @Param("sold") int sold);
+
+    // Summary page newest first, with a count query
+    @Query(value = SUMMARY_SELECT + " ORDER BY p.createdAt DESC, p.id DESC",
+            countQuery = "SELECT COUNT(p) FROM Product p")
+    Page<ProductSummaryDTO> findSummaries(Pageable pageable);
+
+    // Keyset summary pages newest first over (createdAt, id); the Pageable only limits, no count query is run
+    @Query(SUMMARY_SELECT + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductSummaryDTO> findNewestSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)"
+            + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductSummaryDTO> findNewestSummariesBefore(@Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") String id, Pageable pageable);
 }
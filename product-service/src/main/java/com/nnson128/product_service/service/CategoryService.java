@@ -3,11 +3,13 @@ package com.nnson128.product_service.service;
 import com.nnson128.product_service.dto.CategoryDTO;
 import com.nnson128.product_service.entity.Category;
 import com.nnson128.product_service.repository.CategoryRepository;
+import com.nnson128.product_service.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -16,6 +18,8 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
 
     public CategoryDTO createCategory(CategoryDTO request) {
         Category category = Category.builder()
@@ -42,10 +46,15 @@ public class CategoryService {
     public CategoryDTO updateCategory(String id, CategoryDTO request) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
+        boolean renamed = !Objects.equals(category.getName(), request.getName());
         category.setName(request.getName());
         category.setDescription(request.getDescription());
         category.setImageUrl(request.getImageUrl());
         Category updated = categoryRepository.save(category);
+        if (renamed) {
+            // Category names are searchable on every product in the category
+            productRepository.findIdsByCategoryId(id).forEach(productSearchIndex::reindexAfterCommit);
+        }
         return mapToDTO(updated);
     }
 
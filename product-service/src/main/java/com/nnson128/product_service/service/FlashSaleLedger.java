@@ -0,0 +1,301 @@
+package com.nnson128.product_service.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Redis side of flash sales. The stock of a flash-sale product is split over N sub-counters, each
+ * its own key (hash-tagged per sub-counter, so a cluster can spread them), and taken with one script
+ * call on one sub-counter, without any database lock. Every sub-counter also counts what it sold,
+ * for {@link FlashSaleService} to apply to {@code products.stock}.
+ * Flash-sale products are listed in {@code product:flash:sales} and mirrored on every replica,
+ * refreshed over pub/sub.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlashSaleLedger implements MessageListener {
+
+    public static final String SALES_KEY = "product:flash:sales";
+    public static final String CHANNEL = "product:flash:changed";
+    private static final String KEY_PREFIX = "product:flash:";
+
+    private static final RedisScript<Long> TAKE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/flash/take.lua"), Long.class);
+    private static final RedisScript<Long> DRAIN_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/flash/drain.lua"), Long.class);
+    private static final RedisScript<Long> GIVE_BACK_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/flash/give-back.lua"), Long.class);
+    private static final RedisScript<Long> UNLOCK_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    private static final int TAKE_ATTEMPTS = 3;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${product.flash-sale.lock-ttl-ms:10000}")
+    private long lockTtlMs;
+
+    /**
+     * Sub-counters per flash-sale product, as last read from Redis
+     */
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @PostConstruct
+    void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        reload();
+    }
+
+    public boolean isActive(String productId) {
+        return shardCounts.containsKey(productId);
+    }
+
+    public Integer shardCount(String productId) {
+        return shardCounts.get(productId);
+    }
+
+    public Set<String> activeProducts() {
+        return Set.copyOf(shardCounts.keySet());
+    }
+
+    /**
+     * Re-read the flash-sale products from Redis
+     */
+    public void reload() {
+        try {
+            Map<String, Integer> sales = new HashMap<>();
+            redisTemplate.<String, String>opsForHash().entries(SALES_KEY)
+                    .forEach((productId, shards) -> sales.put(productId, Integer.parseInt(shards)));
+            shardCounts.keySet().retainAll(sales.keySet());
+            shardCounts.putAll(sales);
+        } catch (Exception e) {
+            log.warn("Failed to load flash sales", e);
+        }
+    }
+
+    /**
+     * Split stock evenly over the sub-counters. The product is not taken from until {@link #register}.
+     */
+    public void open(String productId, int stock, int shards) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (int shard = 0; shard < shards; shard++) {
+                redis.set(stockKey(productId, shard), String.valueOf(stock / shards + (shard < stock % shards ? 1 : 0)));
+                redis.set(soldKey(productId, shard), "0");
+            }
+            return null;
+        });
+    }
+
+    public void register(String productId, int shards) {
+        redisTemplate.opsForHash().put(SALES_KEY, productId, String.valueOf(shards));
+        shardCounts.put(productId, shards);
+        publish();
+    }
+
+    /**
+     * Stop taking stock: unlist the product everywhere and close its sub-counters.
+     * Returns the units that were left unsold.
+     */
+    public long close(String productId, int shards) {
+        redisTemplate.opsForHash().delete(SALES_KEY, productId);
+        shardCounts.remove(productId);
+        publish();
+        long unsold = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            unsold += drain(productId, shard, -1);
+        }
+        return unsold;
+    }
+
+    public void delete(String productId, int shards) {
+        List<String> keys = new ArrayList<>(shards * 2);
+        for (int shard = 0; shard < shards; shard++) {
+            keys.add(stockKey(productId, shard));
+            keys.add(soldKey(productId, shard));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    /**
+     * Take quantity from one sub-counter, starting at a random one. When it is short but the product
+     * still has enough stock, the sub-counter is refilled from the others first (rebalance).
+     * Returns the sub-counter taken from, or -1 when the product does not have quantity left.
+     */
+    public int take(String productId, int quantity) {
+        Integer shards = shardCounts.get(productId);
+        if (shards == null) {
+            return -1;
+        }
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        for (int attempt = 0; attempt < TAKE_ATTEMPTS; attempt++) {
+            if (take(productId, shard, quantity)) {
+                return shard;
+            }
+            long[] stock = readCounters(productId, shards, true);
+            long total = 0;
+            for (long units : stock) {
+                total += units;
+            }
+            if (total < quantity || shards == 1) {
+                return -1;
+            }
+            rebalance(productId, shard, stock, Math.max(quantity, total / shards));
+        }
+        return -1;
+    }
+
+    /**
+     * Return units taken by an order that rolled back. Returns false when the sale has been closed
+     * meanwhile; the units then have to go back to the product row.
+     */
+    public boolean giveBack(String productId, int shard, int quantity) {
+        Long left = redisTemplate.execute(GIVE_BACK_SCRIPT, List.of(stockKey(productId, shard), soldKey(productId, shard)),
+                String.valueOf(quantity));
+        return left != null && left >= 0;
+    }
+
+    /**
+     * Add stock to a random sub-counter
+     */
+    public void add(String productId, int quantity) {
+        Integer shards = shardCounts.get(productId);
+        if (shards != null) {
+            redisTemplate.opsForValue().increment(stockKey(productId, ThreadLocalRandom.current().nextInt(shards)), quantity);
+        }
+    }
+
+    public long[] readStock(String productId, int shards) {
+        return readCounters(productId, shards, true);
+    }
+
+    public long[] readSold(String productId, int shards) {
+        return readCounters(productId, shards, false);
+    }
+
+    /**
+     * Lower the sold counts by what was applied to the database
+     */
+    public void settle(String productId, long[] applied) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (int shard = 0; shard < applied.length; shard++) {
+                if (applied[shard] != 0) {
+                    redis.decrBy(soldKey(productId, shard), applied[shard]);
+                }
+            }
+            return null;
+        });
+    }
+
+    public boolean tryLock(String productId) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(lockKey(productId), instanceId, Duration.ofMillis(lockTtlMs)));
+    }
+
+    public void unlock(String productId) {
+        redisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey(productId)), instanceId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        reload();
+    }
+
+    private boolean take(String productId, int shard, int quantity) {
+        Long left = redisTemplate.execute(TAKE_SCRIPT, List.of(stockKey(productId, shard), soldKey(productId, shard)),
+                String.valueOf(quantity));
+        return left != null && left >= 0;
+    }
+
+    /**
+     * Move units from the fullest sub-counters into a short one until it holds target
+     */
+    private void rebalance(String productId, int shard, long[] stock, long target) {
+        long needed = target - stock[shard];
+        while (needed > 0) {
+            int donor = -1;
+            for (int other = 0; other < stock.length; other++) {
+                if (other != shard && stock[other] > 0 && (donor < 0 || stock[other] > stock[donor])) {
+                    donor = other;
+                }
+            }
+            if (donor < 0) {
+                return;
+            }
+            long moved = drain(productId, donor, Math.min(needed, stock[donor]));
+            stock[donor] = 0;
+            if (moved > 0) {
+                redisTemplate.opsForValue().increment(stockKey(productId, shard), moved);
+                needed -= moved;
+            }
+        }
+    }
+
+    private long drain(String productId, int shard, long most) {
+        Long moved = redisTemplate.execute(DRAIN_SCRIPT, List.of(stockKey(productId, shard)), String.valueOf(most));
+        return moved != null ? moved : 0L;
+    }
+
+    private long[] readCounters(String productId, int shards, boolean stock) {
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (int shard = 0; shard < shards; shard++) {
+                redis.get(stock ? stockKey(productId, shard) : soldKey(productId, shard));
+            }
+            return null;
+        });
+        long[] counters = new long[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            Object value = values.get(shard);
+            counters[shard] = value != null ? Long.parseLong(value.toString()) : 0L;
+        }
+        return counters;
+    }
+
+    private void publish() {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, "");
+        } catch (Exception e) {
+            log.warn("Failed to publish flash sale change", e);
+        }
+    }
+
+    private static String stockKey(String productId, int shard) {
+        return KEY_PREFIX + "{" + productId + ":" + shard + "}:stock";
+    }
+
+    private static String soldKey(String productId, int shard) {
+        return KEY_PREFIX + "{" + productId + ":" + shard + "}:sold";
+    }
+
+    private static String lockKey(String productId) {
+        return KEY_PREFIX + productId + ":reconcile-lock";
+    }
+}
@@ -0,0 +1,254 @@
+package com.nnson128.product_service.service;
+
+import com.nnson128.product_service.dto.FlashSaleDTO;
+import com.nnson128.product_service.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * Flash-sale mode for hot products. While it is on, stock is taken from Redis sub-counters
+ * ({@link FlashSaleLedger}) instead of the product row, and what was sold is applied to
+ * {@code products.stock} every {@code product.flash-sale.reconcile-interval-ms}.
+ * Sold counts are only lowered in Redis after the database commit: a crash in between applies
+ * them twice (stock reads low, nothing is oversold) rather than losing them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlashSaleService {
+
+    private static final long LOCK_RETRY_MS = 100;
+
+    private final FlashSaleLedger ledger;
+    private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ProductEventPublisher productEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${product.flash-sale.default-shards:8}")
+    private int defaultShards;
+
+    @Value("${product.flash-sale.max-shards:64}")
+    private int maxShards;
+
+    /**
+     * Move the product's stock into Redis sub-counters. The product row is switched to flash-sale mode
+     * first, so a concurrent row update either lands before the stock is read or fails afterwards.
+     */
+    @Transactional
+    public FlashSaleDTO start(String productId, Integer shards) {
+        int shardCount = shards != null ? shards : defaultShards;
+        if (shardCount < 1 || shardCount > maxShards) {
+            throw new RuntimeException("Shards must be between 1 and " + maxShards);
+        }
+        if (productRepository.startFlashSale(productId) == 0) {
+            throw new RuntimeException(productRepository.existsById(productId)
+                    ? "Product is already in a flash sale" : "Product not found");
+        }
+        int stock = productRepository.findStockById(productId).orElse(0);
+        if (stock <= 0) {
+            throw new RuntimeException("Product has no stock for a flash sale");
+        }
+        ledger.open(productId, stock, shardCount);
+        // Only listed once the mode switch is committed; until then every replica keeps using the row
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ledger.register(productId, shardCount);
+            }
+        });
+        log.info("Flash sale started for product {} with {} units over {} sub-counters", productId, stock, shardCount);
+        return FlashSaleDTO.builder()
+                .productId(productId)
+                .shards(shardCount)
+                .availableStock(stock)
+                .build();
+    }
+
+    /**
+     * Close the sub-counters, apply the last sales and take stock from the product row again
+     */
+    public FlashSaleDTO stop(String productId) {
+        Integer shardCount = ledger.shardCount(productId);
+        if (shardCount == null) {
+            throw new RuntimeException("Product is not in a flash sale");
+        }
+        long unsold = ledger.close(productId, shardCount);
+        awaitLock(productId);
+        try {
+            reconcileLocked(productId, shardCount);
+        } finally {
+            ledger.unlock(productId);
+        }
+        transactionTemplate.executeWithoutResult(status -> productRepository.endFlashSale(productId));
+        ledger.delete(productId, shardCount);
+        productCache.invalidate(productId, true);
+        log.info("Flash sale stopped for product {}, {} units unsold", productId, unsold);
+        return FlashSaleDTO.builder()
+                .productId(productId)
+                .shards(shardCount)
+                .availableStock(unsold)
+                .build();
+    }
+
+    public List<FlashSaleDTO> getFlashSales() {
+        List<FlashSaleDTO> sales = new ArrayList<>();
+        for (String productId : ledger.activeProducts()) {
+            Integer shardCount = ledger.shardCount(productId);
+            if (shardCount == null) {
+                continue;
+            }
+            sales.add(FlashSaleDTO.builder()
+                    .productId(productId)
+                    .shards(shardCount)
+                    .availableStock(LongStream.of(ledger.readStock(productId, shardCount)).sum())
+                    .unreconciledSold(LongStream.of(ledger.readSold(productId, shardCount)).sum())
+                    .build());
+        }
+        return sales;
+    }
+
+    public boolean isActive(String productId) {
+        return ledger.isActive(productId);
+    }
+
+    /**
+     * Re-read the flash-sale products, for a replica that found a product row in flash-sale mode
+     * before hearing about it
+     */
+    public void refresh() {
+        ledger.reload();
+    }
+
+    /**
+     * Take flash-sale stock. Inside a transaction the units go back to Redis if it rolls back.
+     */
+    public boolean take(String productId, int quantity) {
+        int shard = ledger.take(productId, quantity);
+        if (shard < 0) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED && !ledger.giveBack(productId, shard, quantity)) {
+                        returnToRow(productId, quantity);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Make restocked units available to the flash sale once the restock commits
+     */
+    public void add(String productId, int quantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ledger.add(productId, quantity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ledger.add(productId, quantity);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${product.flash-sale.reconcile-interval-ms:1000}")
+    public void reconcileAll() {
+        ledger.reload();
+        for (String productId : ledger.activeProducts()) {
+            try {
+                reconcile(productId);
+            } catch (Exception e) {
+                log.error("Flash sale reconciliation failed for product {}", productId, e);
+            }
+        }
+    }
+
+    /**
+     * Apply what the product sold since the last run to its row, unless another replica is doing it.
+     * Returns the units applied.
+     */
+    public long reconcile(String productId) {
+        Integer shardCount = ledger.shardCount(productId);
+        if (shardCount == null || !ledger.tryLock(productId)) {
+            return 0;
+        }
+        try {
+            return reconcileLocked(productId, shardCount);
+        } finally {
+            ledger.unlock(productId);
+        }
+    }
+
+    private long reconcileLocked(String productId, int shardCount) {
+        long[] sold = ledger.readSold(productId, shardCount);
+        long total = LongStream.of(sold).sum();
+        if (total == 0) {
+            return 0;
+        }
+        Boolean soldOut = transactionTemplate.execute(status -> {
+            if (productRepository.applyFlashSales(productId, Math.toIntExact(total)) == 0) {
+                return null;
+            }
+            return productRepository.findStockById(productId).orElse(0) == 0;
+        });
+        ledger.settle(productId, sold);
+        if (soldOut == null) {
+            log.warn("Flash sale product {} no longer exists, dropped {} sold units", productId, total);
+            return 0;
+        }
+        if (soldOut) {
+            productRepository.findById(productId).ifPresent(productEventPublisher::publishStockChanged);
+        }
+        productCache.invalidate(productId, soldOut);
+        return total;
+    }
+
+    /**
+     * Units of a rolled-back order whose flash sale was stopped before they could go back to Redis.
+     * The stop applied (or will apply) them as sold, so they are added back to the row.
+     */
+    private void returnToRow(String productId, int quantity) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            requiresNew.executeWithoutResult(status -> {
+                if (productRepository.restock(productId, quantity) == 0) {
+                    productRepository.addStock(productId, quantity);
+                }
+            });
+            productCache.invalidate(productId, true);
+        } catch (Exception e) {
+            log.error("Failed to return {} units of rolled-back flash sale orders to product {}", quantity, productId, e);
+        }
+    }
+
+    private void awaitLock(String productId) {
+        // A run in progress holds the lock for milliseconds; the lock ttl bounds the wait
+        while (!ledger.tryLock(productId)) {
+            try {
+                Thread.sleep(LOCK_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while stopping the flash sale");
+            }
+        }
+    }
+}
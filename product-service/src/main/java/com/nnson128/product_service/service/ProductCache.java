@@ -0,0 +1,412 @@
+package com.nnson128.product_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nnson128.product_service.dto.ProductCacheStatsDTO;
+import com.nnson128.product_service.dto.ProductResponseDTO;
+import com.nnson128.product_service.dto.ProductSummaryDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through product cache in two tiers: a bounded in-process cache, then Redis shared by all
+ * replicas, then MySQL. Listing pages are cached in-process only, for a short time.
+ * Changes evict the product from Redis and publish its id on {@code product:invalidate} once the
+ * transaction commits, and every replica (including the sender) drops its local copy.
+ * A read that loaded the old row just before a change commits can still put it back in Redis,
+ * so the Redis ttl bounds how long such a stale copy can live.
+ * Per-tier hits and misses are published as {@code product.cache.requests} metrics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "product:invalidate";
+    public static final String LISTINGS_CHANNEL = "product:invalidate:listings";
+    public static final String KEY_PREFIX = "product:";
+
+    private static final String LOCAL = "local";
+    private static final String REDIS = "redis";
+
+    // Rough heap cost of a cached DTO without its strings: the object, BigDecimals, timestamps and boxed numbers
+    private static final int DTO_OVERHEAD_BYTES = 400;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final long BYTES_PER_MB = 1024L * 1024;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${product.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.cache.local.maximum-mb:16}")
+    private long localMaximumMb;
+
+    @Value("${product.cache.local.ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    @Value("${product.cache.redis.ttl-seconds:300}")
+    private long redisTtlSeconds;
+
+    @Value("${product.cache.pages.maximum-mb:8}")
+    private long pagesMaximumMb;
+
+    @Value("${product.cache.pages.ttl-seconds:30}")
+    private long pagesTtlSeconds;
+
+    /**
+     * Bumped on every invalidation so a read that raced with a change is not cached locally
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Cache<String, ProductResponseDTO> products;
+    private Cache<String, Page<?>> pages;
+    private Counter localHits;
+    private Counter localMisses;
+    private Counter redisHits;
+    private Counter redisMisses;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        // Bounded by estimated bytes rather than entries: descriptions and page sizes vary widely
+        products = Caffeine.newBuilder()
+                .maximumWeight(localMaximumMb * BYTES_PER_MB)
+                .weigher((String id, ProductResponseDTO product) -> weigh(product))
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .recordStats()
+                .build();
+        pages = Caffeine.newBuilder()
+                .maximumWeight(pagesMaximumMb * BYTES_PER_MB)
+                .weigher((String key, Page<?> page) -> page.getContent().stream().mapToInt(ProductCache::weigh).sum())
+                .expireAfterWrite(Duration.ofSeconds(pagesTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "product.local");
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "product.pages");
+        localHits = counter(LOCAL, "hit");
+        localMisses = counter(LOCAL, "miss");
+        redisHits = counter(REDIS, "hit");
+        redisMisses = counter(REDIS, "miss");
+        listenerContainer.addMessageListener(this, List.of(
+                new ChannelTopic(INVALIDATION_CHANNEL), new ChannelTopic(LISTINGS_CHANNEL)));
+        log.info("Product cache enabled, local maximum {} MB, pages maximum {} MB, local ttl {}s, redis ttl {}s",
+                localMaximumMb, pagesMaximumMb, localTtlSeconds, redisTtlSeconds);
+    }
+
+    /**
+     * Product from the local cache, then Redis, then the loader, filling the tiers it missed
+     */
+    public ProductResponseDTO get(String productId, Supplier<ProductResponseDTO> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        ProductResponseDTO product = products.getIfPresent(productId);
+        if (product != null) {
+            localHits.increment();
+            return product;
+        }
+        localMisses.increment();
+
+        long stamp = invalidations.get();
+        product = readRedis(productId);
+        if (product != null) {
+            redisHits.increment();
+        } else {
+            redisMisses.increment();
+            product = loader.get();
+            writeRedis(product);
+        }
+        if (invalidations.get() == stamp) {
+            products.put(productId, product);
+        }
+        return product;
+    }
+
+    /**
+     * Many products at once: local hits first, then one Redis MGET, then one loader call for the rest.
+     * Returns the products found, in the order of {@code productIds}.
+     */
+    public Map<String, ProductResponseDTO> getAll(Collection<String> productIds,
+                                                  Function<Collection<String>, Map<String, ProductResponseDTO>> loader) {
+        List<String> ids = productIds.stream().distinct().toList();
+        if (!enabled) {
+            return inOrder(ids, loader.apply(ids));
+        }
+        Map<String, ProductResponseDTO> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            ProductResponseDTO product = products.getIfPresent(id);
+            if (product != null) {
+                found.put(id, product);
+            } else {
+                missing.add(id);
+            }
+        }
+        localHits.increment(found.size());
+        localMisses.increment(missing.size());
+        if (missing.isEmpty()) {
+            return inOrder(ids, found);
+        }
+
+        long stamp = invalidations.get();
+        Map<String, ProductResponseDTO> fetched = readRedis(missing);
+        redisHits.increment(fetched.size());
+        redisMisses.increment(missing.size() - fetched.size());
+        if (fetched.size() < missing.size()) {
+            Map<String, ProductResponseDTO> loaded = loader.apply(missing.stream()
+                    .filter(id -> !fetched.containsKey(id))
+                    .toList());
+            writeRedis(loaded.values());
+            fetched.putAll(loaded);
+        }
+        if (invalidations.get() == stamp) {
+            products.putAll(fetched);
+        }
+        found.putAll(fetched);
+        return inOrder(ids, found);
+    }
+
+    /**
+     * Listing page from the local cache or the loader
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Page<T> getPage(String key, Supplier<Page<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Page<T> page = (Page<T>) pages.getIfPresent(key);
+        if (page != null) {
+            return page;
+        }
+        long stamp = invalidations.get();
+        page = loader.get();
+        if (invalidations.get() == stamp) {
+            pages.put(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * Drop the product here and on every other replica after commit.
+     * {@code listings} also drops cached listing pages, for changes that move a product
+     * in or out of a listing or change what it shows there.
+     */
+    public void invalidate(String productId, boolean listings) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            evict(productId);
+            try {
+                redisTemplate.delete(KEY_PREFIX + productId);
+                redisTemplate.convertAndSend(INVALIDATION_CHANNEL, productId);
+            } catch (Exception e) {
+                log.warn("Failed to publish product invalidation for productId: {}", productId, e);
+            }
+        });
+        if (listings) {
+            invalidateListings();
+        }
+    }
+
+    /**
+     * Drop cached listing pages here and on every other replica after commit
+     */
+    public void invalidateListings() {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            evictListings();
+            try {
+                redisTemplate.convertAndSend(LISTINGS_CHANNEL, "*");
+            } catch (Exception e) {
+                log.warn("Failed to publish product listing invalidation", e);
+            }
+        });
+    }
+
+    public List<ProductCacheStatsDTO> getStats() {
+        if (!enabled) {
+            return List.of();
+        }
+        return List.of(stats(LOCAL, localHits, localMisses), stats(REDIS, redisHits, redisMisses));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        if (LISTINGS_CHANNEL.equals(channel)) {
+            evictListings();
+        } else {
+            evict(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private ProductResponseDTO readRedis(String productId) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + productId);
+            return json != null ? objectMapper.readValue(json, ProductResponseDTO.class) : null;
+        } catch (Exception e) {
+            log.warn("Failed to read cached product: {}", productId, e);
+            return null;
+        }
+    }
+
+    private Map<String, ProductResponseDTO> readRedis(List<String> productIds) {
+        Map<String, ProductResponseDTO> found = new HashMap<>();
+        try {
+            List<String> values = redisTemplate.opsForValue()
+                    .multiGet(productIds.stream().map(id -> KEY_PREFIX + id).toList());
+            for (int i = 0; values != null && i < values.size(); i++) {
+                if (values.get(i) != null) {
+                    found.put(productIds.get(i), objectMapper.readValue(values.get(i), ProductResponseDTO.class));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read {} cached products", productIds.size(), e);
+        }
+        return found;
+    }
+
+    private void writeRedis(Collection<ProductResponseDTO> loaded) {
+        if (loaded.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> values = new HashMap<>();
+            for (ProductResponseDTO product : loaded) {
+                values.put(KEY_PREFIX + product.getId(), objectMapper.writeValueAsString(product));
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                values.forEach((key, json) -> redis.setEx(key, redisTtlSeconds, json));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to cache {} products", loaded.size(), e);
+        }
+    }
+
+    private void writeRedis(ProductResponseDTO product) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + product.getId(), objectMapper.writeValueAsString(product),
+                    Duration.ofSeconds(redisTtlSeconds));
+        } catch (Exception e) {
+            log.warn("Failed to cache product: {}", product.getId(), e);
+        }
+    }
+
+    /**
+     * Estimated heap bytes of a cached product or summary
+     */
+    private static int weigh(Object value) {
+        if (value instanceof ProductResponseDTO product) {
+            int bytes = DTO_OVERHEAD_BYTES + weigh(product.getId()) + weigh(product.getName())
+                    + weigh(product.getDescription()) + weigh(product.getSku()) + weigh(product.getImageUrl())
+                    + weigh(product.getStatus());
+            if (product.getCategory() != null) {
+                bytes += DTO_OVERHEAD_BYTES + weigh(product.getCategory().getId()) + weigh(product.getCategory().getName())
+                        + weigh(product.getCategory().getDescription()) + weigh(product.getCategory().getImageUrl());
+            }
+            return bytes;
+        }
+        if (value instanceof ProductSummaryDTO summary) {
+            return DTO_OVERHEAD_BYTES + weigh(summary.getId()) + weigh(summary.getName()) + weigh(summary.getImageUrl())
+                    + weigh(summary.getStatus()) + weigh(summary.getCategoryId()) + weigh(summary.getCategoryName());
+        }
+        return DTO_OVERHEAD_BYTES;
+    }
+
+    private static int weigh(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2 * value.length();
+    }
+
+    private void evict(String productId) {
+        invalidations.incrementAndGet();
+        products.invalidate(productId);
+    }
+
+    private void evictListings() {
+        invalidations.incrementAndGet();
+        pages.invalidateAll();
+    }
+
+    private Counter counter(String tier, String result) {
+        return Counter.builder("product.cache.requests")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Map<String, ProductResponseDTO> inOrder(List<String> ids, Map<String, ProductResponseDTO> found) {
+        Map<String, ProductResponseDTO> ordered = new LinkedHashMap<>();
+        for (String id : ids) {
+            ProductResponseDTO product = found.get(id);
+            if (product != null) {
+                ordered.put(id, product);
+            }
+        }
+        return ordered;
+    }
+
+    private static ProductCacheStatsDTO stats(String tier, Counter hits, Counter misses) {
+        long hitCount = (long) hits.count();
+        long missCount = (long) misses.count();
+        long total = hitCount + missCount;
+        return ProductCacheStatsDTO.builder()
+                .tier(tier)
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRatio(total > 0 ? (double) hitCount / total : 0.0)
+                .build();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
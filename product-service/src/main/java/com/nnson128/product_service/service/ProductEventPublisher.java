@@ -0,0 +1,90 @@
+package com.nnson128.product_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.product_service.dto.ProductChangedEvent;
+import com.nnson128.product_service.entity.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Publishes product change events once the surrounding transaction has committed.
+ * Publishing failures are logged and never fail the product change itself.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductEventPublisher {
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${product.events.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.events.topic:product.changed}")
+    private String topic;
+
+    public void publishDetailsChanged(Product product) {
+        publish(toEvent(ProductChangedEvent.DETAILS_CHANGED, product));
+    }
+
+    public void publishStockChanged(Product product) {
+        publish(toEvent(ProductChangedEvent.STOCK_CHANGED, product));
+    }
+
+    public void publishDeleted(String productId) {
+        publish(ProductChangedEvent.builder()
+                .type(ProductChangedEvent.DELETED)
+                .productId(productId)
+                .changedAt(System.currentTimeMillis())
+                .build());
+    }
+
+    private void publish(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(ProductChangedEvent event) {
+        try {
+            kafkaTemplate.send(topic, event.getProductId(), objectMapper.writeValueAsString(event))
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.warn("Failed to publish {} event for productId: {}", event.getType(), event.getProductId(), e);
+                        }
+                    });
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Failed to publish {} event for productId: {}", event.getType(), event.getProductId(), e);
+        }
+    }
+
+    private ProductChangedEvent toEvent(String type, Product product) {
+        return ProductChangedEvent.builder()
+                .type(type)
+                .productId(product.getId())
+                .name(product.getName())
+                .price(product.getPrice())
+                .imageUrl(product.getImageUrl())
+                .stock(product.getStock())
+                .status(product.getStatus())
+                .changedAt(System.currentTimeMillis())
+                .build();
+    }
+}
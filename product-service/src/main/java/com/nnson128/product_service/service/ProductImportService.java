@@ -0,0 +1,424 @@
+package com.nnson128.product_service.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nnson128.product_service.dto.BulkImportResponseDTO;
+import com.nnson128.product_service.dto.ImportJobDTO;
+import com.nnson128.product_service.dto.ProductRequestDTO;
+import com.nnson128.product_service.entity.Category;
+import com.nnson128.product_service.entity.Product;
+import com.nnson128.product_service.repository.CategoryRepository;
+import com.nnson128.product_service.repository.ProductJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk product import. The JSON ({"products": [...]} or a bare array) is read as a stream, chunk-size
+ * products at a time: each chunk is validated in parallel against the categories loaded once per import,
+ * inserted with one JDBC batch and committed on its own, so memory and transaction size stay bounded
+ * however large the spreadsheet is. Background jobs keep their progress in Redis, readable from any replica.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    private static final String JOB_KEY_PREFIX = "product:import:job:";
+    private static final BigDecimal MAX_PRICE = new BigDecimal("100000000"); // DECIMAL(10,2)
+
+    private final CategoryRepository categoryRepository;
+    private final ProductJdbcRepository productJdbcRepository;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${product.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${product.import.max-errors:1000}")
+    private int maxErrors;
+
+    @Value("${product.import.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${product.import.job-ttl-seconds:86400}")
+    private long jobTtlSeconds;
+
+    private ExecutorService jobExecutor;
+
+    @PostConstruct
+    void init() {
+        jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, runnable -> {
+            Thread thread = new Thread(runnable, "product-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Import the products and wait for the result
+     */
+    public BulkImportResponseDTO importProducts(InputStream json) {
+        return importProducts(json, progress -> { });
+    }
+
+    /**
+     * Spool the products to a temporary file and import them in the background.
+     * Poll {@link #getJob} for progress.
+     */
+    public ImportJobDTO submit(InputStream json) {
+        Path file;
+        try {
+            file = Files.createTempFile("product-import-", ".json");
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create import file", e);
+        }
+        try {
+            Files.copy(json, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new RuntimeException("Failed to read import data");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ImportJobDTO job = ImportJobDTO.builder()
+                .jobId(UUID.randomUUID().toString())
+                .status("QUEUED")
+                .createdAt(now)
+                .build();
+        saveJob(job);
+        try {
+            jobExecutor.execute(() -> run(job, file));
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(file);
+            throw new RuntimeException("Product import is shutting down");
+        }
+        return job;
+    }
+
+    public ImportJobDTO getJob(String jobId) {
+        String json = redisTemplate.opsForValue().get(JOB_KEY_PREFIX + jobId);
+        if (json == null) {
+            throw new RuntimeException("Import job not found");
+        }
+        try {
+            return objectMapper.readValue(json, ImportJobDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable import job: " + jobId, e);
+        }
+    }
+
+    /**
+     * Import the products, reporting the counts so far after every committed chunk
+     */
+    BulkImportResponseDTO importProducts(InputStream json, Consumer<BulkImportResponseDTO> progress) {
+        long started = System.currentTimeMillis();
+        Categories categories = loadCategories();
+        Counts counts = new Counts();
+        List<JsonNode> chunk = new ArrayList<>(chunkSize);
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            seekProducts(parser);
+            try {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    chunk.add(objectMapper.readTree(parser));
+                    if (chunk.size() == chunkSize) {
+                        importChunk(chunk, counts.total + 1, categories, counts);
+                        chunk.clear();
+                        progress.accept(counts.toResult());
+                    }
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    throw new IOException("expected a product object but found " + parser.currentToken());
+                }
+            } catch (IOException e) {
+                // Products read before the broken one are still imported
+                importChunk(chunk, counts.total + 1, categories, counts);
+                chunk.clear();
+                counts.total++;
+                counts.fail(counts.total, "Unknown", "Invalid import data, import stopped: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid import data: " + e.getMessage());
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, counts.total + 1, categories, counts);
+        }
+        if (counts.total == 0) {
+            throw new RuntimeException("No products provided for import");
+        }
+        if (counts.succeeded > 0) {
+            productCache.invalidateListings();
+        }
+        log.info("Imported {} of {} products in {} ms", counts.succeeded, counts.total,
+                System.currentTimeMillis() - started);
+        return counts.toResult();
+    }
+
+    private void run(ImportJobDTO job, Path file) {
+        job.setStatus("RUNNING");
+        saveJob(job);
+        try (InputStream json = Files.newInputStream(file)) {
+            job.setResult(importProducts(json, progress -> {
+                job.setResult(progress);
+                saveJob(job);
+            }));
+            job.setStatus("COMPLETED");
+        } catch (Exception e) {
+            log.error("Product import job {} failed", job.getJobId(), e);
+            job.setStatus("FAILED");
+            job.setMessage(e.getMessage());
+        } finally {
+            deleteQuietly(file);
+        }
+        saveJob(job);
+    }
+
+    /**
+     * Move the parser onto the start of the products array
+     */
+    private static void seekProducts(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return;
+        }
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("products".equals(field) && value == JsonToken.START_ARRAY) {
+                    return;
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new RuntimeException("No products provided for import");
+    }
+
+    /**
+     * Validate the chunk in parallel, then insert its valid products in one transaction.
+     * If the batch fails, its products are retried one by one so a single bad row does not fail the rest.
+     */
+    private void importChunk(List<JsonNode> chunk, int firstRow, Categories categories, Counts counts) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Row> rows = IntStream.range(0, chunk.size())
+                .parallel()
+                .mapToObj(i -> toRow(firstRow + i, chunk.get(i), categories, now))
+                .toList();
+        counts.total += rows.size();
+        List<Row> valid = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (row.error() != null) {
+                counts.fail(row.row(), row.productName(), row.error());
+            } else {
+                valid.add(row);
+            }
+        }
+        try {
+            insert(valid.stream().map(Row::product).toList());
+            counts.succeeded += valid.size();
+        } catch (DataAccessException e) {
+            log.warn("Batch insert of {} products failed, inserting them one by one", valid.size(), e);
+            for (Row row : valid) {
+                try {
+                    insert(List.of(row.product()));
+                    counts.succeeded++;
+                } catch (DataAccessException rowFailure) {
+                    counts.fail(row.row(), row.productName(), rowFailure.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        log.debug("Product import at row {}: {} imported, {} failed", counts.total, counts.succeeded, counts.failed);
+    }
+
+    private void insert(List<Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            productJdbcRepository.insertAll(products);
+            products.forEach(product -> productSearchIndex.reindexAfterCommit(product.getId()));
+        });
+    }
+
+    private Row toRow(int row, JsonNode node, Categories categories, LocalDateTime now) {
+        String productName = node.path("name").asText("");
+        if (productName.isBlank()) {
+            productName = "Unknown";
+        }
+        ProductRequestDTO request;
+        try {
+            request = objectMapper.treeToValue(node, ProductRequestDTO.class);
+        } catch (JsonProcessingException e) {
+            return Row.failed(row, productName, "Invalid product: " + e.getOriginalMessage());
+        }
+        String error = validate(request);
+        if (error != null) {
+            return Row.failed(row, productName, error);
+        }
+        boolean byName = !isBlank(request.getCategoryName());
+        String categoryIdentifier = byName ? request.getCategoryName().trim() : request.getCategoryId().trim();
+        Category category = byName ? categories.byName().get(categoryIdentifier) : categories.byId().get(categoryIdentifier);
+        if (category == null) {
+            return Row.failed(row, productName, "Category not found: " + categoryIdentifier);
+        }
+        Product product = Product.builder()
+                .id(UUID.randomUUID().toString())
+                .name(request.getName())
+                .description(request.getDescription())
+                .price(request.getPrice())
+                .originalPrice(request.getOriginalPrice() != null ? request.getOriginalPrice() : request.getPrice())
+                .stock(request.getStock())
+                .sku(request.getSku())
+                .imageUrl(request.getImageUrl())
+                .category(category)
+                .status("ACTIVE")
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        return new Row(row, productName, product, null);
+    }
+
+    /**
+     * Returns why the product cannot be imported, or null. Column limits are checked here so one
+     * oversized value does not fail its whole batch.
+     */
+    private static String validate(ProductRequestDTO request) {
+        if (isBlank(request.getName())) {
+            return "Product name is required";
+        }
+        if (request.getName().length() > 255) {
+            return "Product name must be at most 255 characters";
+        }
+        if (isBlank(request.getCategoryName()) && isBlank(request.getCategoryId())) {
+            return "Category is required";
+        }
+        if (request.getPrice() == null || request.getPrice().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Price must be greater than 0";
+        }
+        if (request.getPrice().compareTo(MAX_PRICE) >= 0
+                || (request.getOriginalPrice() != null && request.getOriginalPrice().compareTo(MAX_PRICE) >= 0)) {
+            return "Price must be less than " + MAX_PRICE.toPlainString();
+        }
+        if (request.getStock() == null || request.getStock() < 0) {
+            return "Stock must be >= 0";
+        }
+        if (request.getSku() != null && request.getSku().length() > 50) {
+            return "SKU must be at most 50 characters";
+        }
+        if (request.getImageUrl() != null && request.getImageUrl().length() > 500) {
+            return "Image URL must be at most 500 characters";
+        }
+        return null;
+    }
+
+    /**
+     * Every category, by id and by name; names match case-insensitively like the MySQL collation
+     */
+    private Categories loadCategories() {
+        Map<String, Category> byId = new HashMap<>();
+        Map<String, Category> byName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Category category : categoryRepository.findAll()) {
+            byId.put(category.getId(), category);
+            byName.put(category.getName(), category);
+        }
+        return new Categories(byId, byName);
+    }
+
+    private void saveJob(ImportJobDTO job) {
+        job.setUpdatedAt(LocalDateTime.now());
+        try {
+            redisTemplate.opsForValue().set(JOB_KEY_PREFIX + job.getJobId(), objectMapper.writeValueAsString(job),
+                    Duration.ofSeconds(jobTtlSeconds));
+        } catch (Exception e) {
+            log.warn("Failed to save import job: {}", job.getJobId(), e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete import file: {}", file, e);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private record Categories(Map<String, Category> byId, Map<String, Category> byName) {
+    }
+
+    private record Row(int row, String productName, Product product, String error) {
+
+        static Row failed(int row, String productName, String error) {
+            return new Row(row, productName, null, error);
+        }
+    }
+
+    /**
+     * Running totals of one import; only the importing thread touches them
+     */
+    private class Counts {
+        private int total;
+        private int succeeded;
+        private int failed;
+        private final List<BulkImportResponseDTO.ImportErrorDTO> errors = new ArrayList<>();
+
+        void fail(int row, String productName, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
+                        .row(row)
+                        .productName(productName)
+                        .errorMessage(message)
+                        .build());
+            }
+        }
+
+        BulkImportResponseDTO toResult() {
+            return BulkImportResponseDTO.builder()
+                    .totalProducts(total)
+                    .successCount(succeeded)
+                    .failCount(failed)
+                    .errors(errors.isEmpty() ? null : List.copyOf(errors))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.nnson128.product_service.service;
+
+import com.nnson128.product_service.entity.Product;
+import com.nnson128.product_service.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.store.MMapDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-process Lucene index over product name, description and category, ranked by BM25 with name
+ * matches weighted highest. Text is lower-cased and folded to ASCII, so "ao thun" finds "Áo thun" and
+ * "dien thoai" finds "Điện thoại"; the last search word also matches as a prefix for search-as-you-type.
+ * The index lives on local disk, in a directory of its own per instance under index-dir, is rebuilt from
+ * {@code products} at startup and is kept current after each commit: changed ids are re-read from MySQL here
+ * and published on {@code product:search:reindex} for the other replicas. Until the first build finishes,
+ * {@link #isReady()} is false.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex implements MessageListener {
+
+    public static final String REINDEX_CHANNEL = "product:search:reindex";
+
+    private static final String ID = "id";
+    private static final String NAME = "name";
+    private static final String DESCRIPTION = "description";
+    private static final String CATEGORY = "category";
+    private static final float NAME_BOOST = 3f;
+    private static final float CATEGORY_BOOST = 1.5f;
+    private static final int REINDEX_CHUNK = 500;
+    private static final String SENDER_SEPARATOR = "|";
+
+    private final ProductRepository productRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${product.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.search.index-dir:${java.io.tmpdir}/product-search-index}")
+    private Path indexDir;
+
+    @Value("${product.search.rebuild-page-size:1000}")
+    private int rebuildPageSize;
+
+    @Value("${product.search.max-results:1000}")
+    private int maxResults;
+
+    private final Analyzer analyzer = new FoldingAnalyzer();
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Ids changed while the startup build runs; indexed again once it is done
+     */
+    private final Set<String> changedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    private Path instanceDir;
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean ready;
+
+    public record SearchHits(List<String> productIds, long total) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(indexDir);
+        removeAbandoned(indexDir);
+        instanceDir = indexDir.resolve(instanceId);
+        Files.createDirectories(instanceDir);
+        directory = new MMapDirectory(instanceDir);
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE));
+        searcherManager = new SearcherManager(writer, null);
+        listenerContainer.addMessageListener(this, new ChannelTopic(REINDEX_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread build = new Thread(this::build, "product-search-build");
+        build.setDaemon(true);
+        build.start();
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (searcherManager != null) {
+            searcherManager.close();
+            writer.rollback();
+            directory.close();
+            delete(instanceDir);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Product ids matching every word of {@code keyword} in any field, best first, for one page.
+     * Pages past {@code product.search.max-results}, and negative pages or sizes, are empty.
+     */
+    public SearchHits search(String keyword, int page, int size) throws IOException {
+        List<String> words = analyze(keyword);
+        if (words.isEmpty()) {
+            return new SearchHits(List.of(), 0);
+        }
+        Query query = query(words);
+        // long so that large page or size values cannot overflow past the max-results check
+        long end = ((long) page + 1) * size;
+        boolean outOfRange = page < 0 || size < 1 || end > maxResults;
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            long total = Math.min(searcher.count(query), maxResults);
+            if (outOfRange) {
+                return new SearchHits(List.of(), total);
+            }
+            TopDocs top = searcher.search(query, (int) end);
+            List<String> ids = new ArrayList<>(size);
+            for (int i = page * size; i < top.scoreDocs.length; i++) {
+                ScoreDoc hit = top.scoreDocs[i];
+                ids.add(searcher.storedFields().document(hit.doc).get(ID));
+            }
+            return new SearchHits(ids, total);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Re-read the product from MySQL and update its entry once the surrounding transaction commits,
+     * here and on every other replica
+     */
+    public void reindexAfterCommit(String productId) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reindexAndPublish(Set.of(productId));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<String> ids = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reindexAndPublish(ids);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProductSearchIndex.this);
+                }
+            });
+            pending = ids;
+        }
+        pending.add(productId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(SENDER_SEPARATOR);
+        if (separator >= 0 && body.substring(0, separator).equals(instanceId)) {
+            return; // indexed here before publishing
+        }
+        reindex(Arrays.asList(body.substring(separator + 1).split(",")));
+    }
+
+    private void reindexAndPublish(Collection<String> productIds) {
+        reindex(productIds);
+        try {
+            redisTemplate.convertAndSend(REINDEX_CHANNEL, instanceId + SENDER_SEPARATOR + String.join(",", productIds));
+        } catch (Exception e) {
+            log.warn("Failed to publish search reindex for {} products", productIds.size(), e);
+        }
+    }
+
+    /**
+     * Update the entries of the given products from MySQL; ids that no longer exist are removed
+     */
+    private void reindex(Collection<String> productIds) {
+        if (!ready) {
+            changedDuringBuild.addAll(productIds);
+        }
+        try {
+            List<String> ids = new ArrayList<>(productIds);
+            for (int from = 0; from < ids.size(); from += REINDEX_CHUNK) {
+                List<String> chunk = ids.subList(from, Math.min(from + REINDEX_CHUNK, ids.size()));
+                Set<String> missing = new HashSet<>(chunk);
+                for (Product product : productRepository.findAllWithCategoryByIdIn(chunk)) {
+                    writer.updateDocument(new Term(ID, product.getId()), toDocument(product));
+                    missing.remove(product.getId());
+                }
+                for (String id : missing) {
+                    writer.deleteDocuments(new Term(ID, id));
+                }
+            }
+            searcherManager.maybeRefresh();
+        } catch (Exception e) {
+            log.error("Failed to reindex {} products for search", productIds.size(), e);
+        }
+    }
+
+    private void build() {
+        long started = System.currentTimeMillis();
+        String afterId = "";
+        long indexed = 0;
+        try {
+            while (true) {
+                List<Product> page = productRepository.findPageAfter(afterId, null, null,
+                        PageRequest.of(0, rebuildPageSize));
+                for (Product product : page) {
+                    writer.updateDocument(new Term(ID, product.getId()), toDocument(product));
+                }
+                indexed += page.size();
+                if (page.size() < rebuildPageSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+            searcherManager.maybeRefresh();
+            ready = true;
+            List<String> changed = new ArrayList<>(changedDuringBuild);
+            changedDuringBuild.clear();
+            if (!changed.isEmpty()) {
+                reindex(changed);
+            }
+            log.info("Product search index built: {} products in {} ms", indexed, System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Failed to build product search index after {} products; search stays on the database", indexed, e);
+        }
+    }
+
+    private static Document toDocument(Product product) {
+        Document document = new Document();
+        document.add(new StringField(ID, product.getId(), Field.Store.YES));
+        document.add(new TextField(NAME, product.getName(), Field.Store.NO));
+        if (product.getDescription() != null) {
+            document.add(new TextField(DESCRIPTION, product.getDescription(), Field.Store.NO));
+        }
+        if (product.getCategory() != null && product.getCategory().getName() != null) {
+            document.add(new TextField(CATEGORY, product.getCategory().getName(), Field.Store.NO));
+        }
+        return document;
+    }
+
+    /**
+     * Every word must match name, category or description; the last one may be an unfinished prefix
+     */
+    private static Query query(List<String> words) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            boolean last = i == words.size() - 1;
+            BooleanQuery.Builder fields = new BooleanQuery.Builder();
+            for (String field : List.of(NAME, CATEGORY, DESCRIPTION)) {
+                float boost = field.equals(NAME) ? NAME_BOOST : field.equals(CATEGORY) ? CATEGORY_BOOST : 1f;
+                fields.add(new BoostQuery(new TermQuery(new Term(field, word)), boost), BooleanClause.Occur.SHOULD);
+                if (last) {
+                    fields.add(new BoostQuery(new PrefixQuery(new Term(field, word)), boost / 2), BooleanClause.Occur.SHOULD);
+                }
+            }
+            query.add(fields.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private List<String> analyze(String text) throws IOException {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        try (TokenStream stream = analyzer.tokenStream(NAME, new StringReader(text))) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                words.add(term.toString());
+            }
+            stream.end();
+        }
+        return words;
+    }
+
+    /**
+     * Delete index directories left behind by instances that did not shut down cleanly: their write lock is free.
+     * Directories of instances still running on this host keep their lock and are left alone.
+     */
+    private static void removeAbandoned(Path parent) throws IOException {
+        List<Path> dirs;
+        try (Stream<Path> children = Files.list(parent)) {
+            dirs = children.filter(Files::isDirectory).toList();
+        }
+        for (Path dir : dirs) {
+            try (Directory abandoned = FSDirectory.open(dir);
+                 Lock lock = abandoned.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+                lock.ensureValid();
+            } catch (LockObtainFailedException e) {
+                continue;
+            }
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        if (Files.exists(dir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Standard tokens, lower-cased and folded to ASCII (Vietnamese tone marks and đ included)
+     */
+    static final class FoldingAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new LowerCaseFilter(tokenizer);
+            stream = new ASCIIFoldingFilter(stream);
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    }
+}
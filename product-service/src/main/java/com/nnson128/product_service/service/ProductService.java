@@ -1,24 +1,40 @@
 package com.nnson128.product_service.service;
 
+import com.nnson128.product_service.dto.CursorPageDTO;
+import com.nnson128.product_service.dto.PageCursor;
+import com.nnson128.product_service.dto.ProductBatchResponseDTO;
+import com.nnson128.product_service.dto.ProductCacheStatsDTO;
 import com.nnson128.product_service.dto.ProductRequestDTO;
 import com.nnson128.product_service.dto.ProductResponseDTO;
-import com.nnson128.product_service.dto.BulkImportProductRequestDTO;
-import com.nnson128.product_service.dto.BulkImportResponseDTO;
+import com.nnson128.product_service.dto.ProductSummaryDTO;
+import com.nnson128.product_service.dto.StockBatchRequestDTO;
+import com.nnson128.product_service.dto.StockBatchResultDTO;
 import com.nnson128.product_service.entity.Product;
 import com.nnson128.product_service.entity.Category;
 import com.nnson128.product_service.repository.ProductRepository;
 import com.nnson128.product_service.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -28,6 +44,16 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductEventPublisher productEventPublisher;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final FlashSaleService flashSaleService;
+
+    @Value("${product.batch.max-ids:200}")
+    private int maxBatchIds;
+
+    @Value("${product.batch.max-stock-lines:100}")
+    private int maxStockLines;
 
     // Create Product
     public ProductResponseDTO createProduct(ProductRequestDTO request) {
@@ -59,20 +85,106 @@ public class ProductService {
                 .build();
 
         Product saved = productRepository.save(product);
+        productCache.invalidateListings();
+        productSearchIndex.reindexAfterCommit(saved.getId());
         return mapToDTO(saved);
     }
 
-    // Get Product by ID
+    // Get Product by ID, through the product cache (no transaction, so cache hits never take a connection)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public ProductResponseDTO getProductById(String id) {
-        Product product = productRepository.findById(id)
+        return productCache.get(id, () -> {
+            Product product = productRepository.findWithCategoryById(id)
+                    .orElseThrow(() -> new RuntimeException("Product not found"));
+            return mapToDTO(product);
+        });
+    }
+
+    // Get many products by ID through the product cache; unknown IDs are left out
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Map<String, ProductResponseDTO> getProductsByIds(Collection<String> ids) {
+        return productCache.getAll(ids, missing -> productRepository.findAllWithCategoryByIdIn(missing).stream()
+                .collect(Collectors.toMap(Product::getId, this::mapToDTO)));
+    }
+
+    // Batch lookup for other services: every requested ID is answered, unknown ones as not found
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ProductBatchResponseDTO getProductsBatch(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new RuntimeException("No product IDs provided");
+        }
+        if (ids.size() > maxBatchIds) {
+            throw new RuntimeException("At most " + maxBatchIds + " product IDs per request");
+        }
+        Map<String, ProductResponseDTO> found = getProductsByIds(ids);
+        Map<String, ProductResponseDTO> products = new LinkedHashMap<>();
+        List<String> notFoundIds = new ArrayList<>();
+        for (String id : ids) {
+            ProductResponseDTO product = found.get(id);
+            products.put(id, product);
+            if (product == null && !notFoundIds.contains(id)) {
+                notFoundIds.add(id);
+            }
+        }
+        return ProductBatchResponseDTO.builder()
+                .products(products)
+                .notFoundIds(notFoundIds)
+                .build();
+    }
+
+    // Get Product by ID straight from the database, for stock checks
+    @Transactional(readOnly = true)
+    public ProductResponseDTO getProductUncached(String id) {
+        Product product = productRepository.findWithCategoryById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         return mapToDTO(product);
     }
 
+    // Next products after afterId in id order, for streaming the catalog
+    @Transactional(readOnly = true)
+    public List<ProductResponseDTO> getProductsAfter(String afterId, String status, String categoryId, int limit) {
+        return productRepository.findPageAfter(afterId != null ? afterId : "", status, categoryId, PageRequest.of(0, limit))
+                .stream()
+                .map(this::mapToDTO)
+                .toList();
+    }
+
     // Get all products paginated
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Page<ProductResponseDTO> getAllProducts(int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return productRepository.findAll(pageable).map(this::mapToDTO);
+        return productCache.getPage("all:" + page + ":" + size,
+                () -> productRepository.findAll(pageable).map(this::mapToDTO));
+    }
+
+    // Product summaries for grid views, newest first: one query for the rows and one for the total
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Page<ProductSummaryDTO> getProductSummaries(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        return productCache.getPage("summary:" + page + ":" + size,
+                () -> productRepository.findSummaries(pageable));
+    }
+
+    // Keyset listing of summaries newest first: same cost for every page, the total is only counted on request
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ProductSummaryDTO> getAllProducts(String after, int size, boolean includeTotal) {
+        PageCursor.validateSize(size);
+        PageCursor cursor = PageCursor.decode(after);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<ProductSummaryDTO> rows = cursor == null
+                ? productRepository.findNewestSummaries(limit)
+                : productRepository.findNewestSummariesBefore(cursor.createdAt(), cursor.id(), limit);
+
+        boolean hasNext = rows.size() > size;
+        List<ProductSummaryDTO> content = hasNext ? rows.subList(0, size) : rows;
+        ProductSummaryDTO last = content.isEmpty() ? null : content.get(content.size() - 1);
+        return CursorPageDTO.<ProductSummaryDTO>builder()
+                .content(new ArrayList<>(content))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? new PageCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .totalElements(includeTotal ? productRepository.count() : null)
+                .build();
     }
 
     // Search by category
@@ -81,17 +193,35 @@ public class ProductService {
         return productRepository.findByCategory(category, pageable).map(this::mapToDTO);
     }
 
-    // Search by name
+    // Full-text search over name, category and description, best matches first.
+    // Falls back to a name LIKE query until the search index has been built.
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Page<ProductResponseDTO> searchProducts(String keyword, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return productRepository.findByNameContainingIgnoreCase(keyword, pageable).map(this::mapToDTO);
+        if (!productSearchIndex.isReady()) {
+            return productRepository.findByNameContainingIgnoreCase(keyword, pageable).map(this::mapToDTO);
+        }
+        ProductSearchIndex.SearchHits hits;
+        try {
+            hits = productSearchIndex.search(keyword, page, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Product search failed", e);
+        }
+        Map<String, ProductResponseDTO> products = getProductsByIds(hits.productIds());
+        List<ProductResponseDTO> content = hits.productIds().stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, hits.total());
     }
 
     // Get active products by category
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Page<ProductResponseDTO> getActiveProductsByCategory(String category, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return productRepository.findByStatusAndCategoryOrderByCreatedAtDesc("ACTIVE", category, pageable)
-                .map(this::mapToDTO);
+        return productCache.getPage("active:" + category + ":" + page + ":" + size,
+                () -> productRepository.findByStatusAndCategoryOrderByCreatedAtDesc("ACTIVE", category, pageable)
+                        .map(this::mapToDTO));
     }
 
     // Update Product
@@ -102,16 +232,28 @@ public class ProductService {
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new RuntimeException("Category not found"));
 
-        product.setName(request.getName());
-        product.setDescription(request.getDescription());
-        product.setPrice(request.getPrice());
-        product.setOriginalPrice(request.getOriginalPrice() != null ? request.getOriginalPrice() : request.getPrice());
-        product.setStock(request.getStock());
-        product.setSku(request.getSku());
-        product.setImageUrl(request.getImageUrl());
-        product.setCategory(category);
+        boolean detailsChanged = !Objects.equals(product.getName(), request.getName())
+                || !sameAmount(product.getPrice(), request.getPrice())
+                || !Objects.equals(product.getImageUrl(), request.getImageUrl());
+
+        // Targeted UPDATEs rather than saving the row read above: a flash sale may have started or applied sales since
+        if (request.getStock() != null && !request.getStock().equals(product.getStock())) {
+            if (product.getFlashSale() || flashSaleService.isActive(id)
+                    || productRepository.setStock(id, request.getStock()) == 0) {
+                throw new RuntimeException("Stock of a product in a flash sale can only be increased by restocking");
+            }
+        }
+        productRepository.updateDetails(id, request.getName(), request.getDescription(), request.getPrice(),
+                request.getOriginalPrice() != null ? request.getOriginalPrice() : request.getPrice(),
+                request.getSku(), request.getImageUrl(), category);
 
-        Product updated = productRepository.save(product);
+        Product updated = productRepository.findWithCategoryById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        productCache.invalidate(id, true);
+        productSearchIndex.reindexAfterCommit(id);
+        if (detailsChanged) {
+            productEventPublisher.publishDetailsChanged(updated);
+        }
         return mapToDTO(updated);
     }
 
@@ -120,34 +262,109 @@ public class ProductService {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         productRepository.delete(product);
+        productCache.invalidate(id, true);
+        productSearchIndex.reindexAfterCommit(id);
+        productEventPublisher.publishDeleted(id);
     }
 
-    // Decrease stock
+    // Decrease stock with a conditional UPDATE: no read before the write, and never below zero
     public void decreaseStock(String productId, int quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        validateQuantity(quantity);
+        String failure = takeStock(productId, quantity);
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
 
-        if (product.getStock() < quantity) {
-            throw new RuntimeException("Insufficient stock");
+    // Decrease stock for every line of an order in one transaction: all lines or none.
+    // Rows are updated in product ID order, so concurrent orders cannot deadlock on each other.
+    public StockBatchResultDTO decreaseStockBatch(List<StockBatchRequestDTO.StockLine> lines) {
+        if (lines == null || lines.isEmpty()) {
+            throw new RuntimeException("No stock lines provided");
+        }
+        if (lines.size() > maxStockLines) {
+            throw new RuntimeException("At most " + maxStockLines + " stock lines per request");
+        }
+        Map<String, Integer> quantities = new TreeMap<>();
+        for (StockBatchRequestDTO.StockLine line : lines) {
+            if (line.getProductId() == null || line.getProductId().isBlank()) {
+                throw new RuntimeException("Product ID is required");
+            }
+            validateQuantity(line.getQuantity() != null ? line.getQuantity() : 0);
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
         }
 
-        product.setStock(product.getStock() - quantity);
-        if (product.getStock() == 0) {
-            product.setStatus("OUT_OF_STOCK");
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            String failure = takeStock(line.getKey(), line.getValue());
+            if (failure != null) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return StockBatchResultDTO.builder()
+                        .success(false)
+                        .failedProductId(line.getKey())
+                        .reason(failure)
+                        .build();
+            }
         }
-        productRepository.save(product);
+        return StockBatchResultDTO.builder().success(true).build();
     }
 
-    // Increase stock
+    /**
+     * Take stock in one UPDATE, or two when it takes the last units and the product sells out.
+     * The first UPDATE keeps the row locked (InnoDB, repeatable read) even when it matches nothing,
+     * so the second sees the same stock. Flash-sale products are taken from Redis instead.
+     * Returns null on success, otherwise why it failed.
+     */
+    private String takeStock(String productId, int quantity) {
+        if (flashSaleService.isActive(productId)) {
+            return flashSaleService.take(productId, quantity) ? null : "Insufficient stock";
+        }
+        if (productRepository.takeStock(productId, quantity) == 1) {
+            // Listing pages only follow status changes; plain stock counts in them refresh with the page ttl
+            productCache.invalidate(productId, false);
+            return null;
+        }
+        if (productRepository.takeLastStock(productId, quantity) == 1) {
+            productRepository.findById(productId).ifPresent(productEventPublisher::publishStockChanged);
+            productCache.invalidate(productId, true);
+            return null;
+        }
+        Boolean flashSale = productRepository.findFlashSaleById(productId).orElse(null);
+        if (flashSale == null) {
+            return "Product not found";
+        }
+        if (flashSale) {
+            // Flash sale started on another replica and this one has not heard yet
+            flashSaleService.refresh();
+            if (flashSaleService.isActive(productId) && flashSaleService.take(productId, quantity)) {
+                return null;
+            }
+        }
+        return "Insufficient stock";
+    }
+
+    // Increase stock with a conditional UPDATE; a sold-out product goes back on sale
     public void increaseStock(String productId, int quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        validateQuantity(quantity);
+        boolean restocked = productRepository.restock(productId, quantity) == 1;
+        if (restocked) {
+            productRepository.findById(productId).ifPresent(productEventPublisher::publishStockChanged);
+        } else if (productRepository.addStock(productId, quantity) == 0) {
+            throw new RuntimeException("Product not found");
+        }
+        if (flashSaleService.isActive(productId)) {
+            flashSaleService.add(productId, quantity);
+        }
+        productCache.invalidate(productId, restocked);
+    }
 
-        product.setStock(product.getStock() + quantity);
-        if ("OUT_OF_STOCK".equals(product.getStatus())) {
-            product.setStatus("ACTIVE");
+    private static void validateQuantity(int quantity) {
+        if (quantity <= 0) {
+            throw new RuntimeException("Quantity must be positive");
         }
-        productRepository.save(product);
+    }
+
+    public List<ProductCacheStatsDTO> getCacheStats() {
+        return productCache.getStats();
     }
 
     // Check stock availability
@@ -164,6 +381,11 @@ public class ProductService {
         product.setRating(newRating);
         product.setReviewCount(newReviewCount);
         productRepository.save(product);
+        productCache.invalidate(productId, true);
+    }
+
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
     }
 
     private ProductResponseDTO mapToDTO(Product product) {
@@ -190,95 +412,12 @@ public class ProductService {
         if (ids == null || ids.isEmpty()) {
             throw new RuntimeException("No product IDs provided");
         }
-        return productRepository.deleteByIdIn(ids);
-    }
-
-    // Bulk import products from Excel
-    public BulkImportResponseDTO bulkImportProducts(BulkImportProductRequestDTO request) {
-        if (request.getProducts() == null || request.getProducts().isEmpty()) {
-            throw new RuntimeException("No products provided for import");
-        }
-
-        List<BulkImportResponseDTO.ImportErrorDTO> errors = new ArrayList<>();
-        int successCount = 0;
-        int totalProducts = request.getProducts().size();
-
-        for (ProductRequestDTO productRequest : request.getProducts()) {
-            try {
-                // Validate required fields
-                if (productRequest.getName() == null || productRequest.getName().trim().isEmpty()) {
-                    errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
-                            .productName("Unknown")
-                            .errorMessage("Product name is required")
-                            .build());
-                    continue;
-                }
-
-                // Check categoryName or categoryId
-                String categoryIdentifier = productRequest.getCategoryName() != null && !productRequest.getCategoryName().trim().isEmpty()
-                        ? productRequest.getCategoryName()
-                        : productRequest.getCategoryId();
-                
-                if (categoryIdentifier == null || categoryIdentifier.trim().isEmpty()) {
-                    errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
-                            .productName(productRequest.getName())
-                            .errorMessage("Category is required")
-                            .build());
-                    continue;
-                }
-
-                if (productRequest.getPrice() == null || productRequest.getPrice().compareTo(BigDecimal.ZERO) <= 0) {
-                    errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
-                            .productName(productRequest.getName())
-                            .errorMessage("Price must be greater than 0")
-                            .build());
-                    continue;
-                }
-
-                if (productRequest.getStock() == null || productRequest.getStock() < 0) {
-                    errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
-                            .productName(productRequest.getName())
-                            .errorMessage("Stock must be >= 0")
-                            .build());
-                    continue;
-                }
-
-                // Check if category exists (by name or ID)
-                boolean categoryExists = false;
-                if (productRequest.getCategoryName() != null && !productRequest.getCategoryName().trim().isEmpty()) {
-                    categoryExists = categoryRepository.existsByName(productRequest.getCategoryName());
-                } else if (productRequest.getCategoryId() != null && !productRequest.getCategoryId().trim().isEmpty()) {
-                    categoryExists = categoryRepository.existsById(productRequest.getCategoryId());
-                }
-                
-                if (!categoryExists) {
-                    errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
-                            .productName(productRequest.getName())
-                            .errorMessage("Category not found: " + categoryIdentifier)
-                            .build());
-                    continue;
-                }
-
-                // Create and save product
-                createProduct(productRequest);
-                successCount++;
-                log.info("Product imported successfully: {}", productRequest.getName());
-
-            } catch (Exception e) {
-                errors.add(BulkImportResponseDTO.ImportErrorDTO.builder()
-                        .productName(productRequest.getName() != null ? productRequest.getName() : "Unknown")
-                        .errorMessage(e.getMessage())
-                        .build());
-                log.error("Error importing product: {}", productRequest.getName(), e);
-            }
-        }
-
-        return BulkImportResponseDTO.builder()
-                .totalProducts(totalProducts)
-                .successCount(successCount)
-                .failCount(totalProducts - successCount)
-                .errors(errors.isEmpty() ? null : errors)
-                .build();
+        long deleted = productRepository.deleteByIdIn(ids);
+        ids.forEach(id -> productCache.invalidate(id, false));
+        ids.forEach(productSearchIndex::reindexAfterCommit);
+        productCache.invalidateListings();
+        ids.forEach(productEventPublisher::publishDeleted);
+        return deleted;
     }
 
     private com.nnson128.product_service.dto.CategoryDTO mapCategoryToDTO(Category category) {
@@ -0,0 +1,18 @@
+-- Move units out of a flash-sale sub-counter, for rebalancing or closing the sale.
+-- KEYS[1] sub-counter stock
+-- ARGV[1] most units to move, negative to move all of them and close the sub-counter (delete its key)
+-- Returns the units moved.
+
+local stock = tonumber(redis.call('GET', KEYS[1]) or '0')
+local amount = tonumber(ARGV[1])
+if amount < 0 then
+    redis.call('DEL', KEYS[1])
+    return stock
+end
+if amount > stock then
+    amount = stock
+end
+if amount > 0 then
+    redis.call('DECRBY', KEYS[1], amount)
+end
+return amount
@@ -0,0 +1,11 @@
+-- Return units taken by a rolled-back order to the sub-counter they came from.
+-- KEYS[1] sub-counter stock, KEYS[2] sub-counter sold
+-- ARGV[1] quantity
+-- Returns the units now in the sub-counter, or -1 when the sale was closed: its sold count has been or
+-- will be applied to the product row, so the units belong back there and the keys are not recreated.
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return -1
+end
+redis.call('DECRBY', KEYS[2], ARGV[1])
+return redis.call('INCRBY', KEYS[1], ARGV[1])
@@ -0,0 +1,12 @@
+-- Take units from one flash-sale sub-counter and count them as sold, or nothing if it holds fewer.
+-- KEYS[1] sub-counter stock, KEYS[2] sub-counter sold
+-- ARGV[1] quantity
+-- Returns the units left in the sub-counter, or -1 when it was short.
+
+local quantity = tonumber(ARGV[1])
+local stock = tonumber(redis.call('GET', KEYS[1]) or '0')
+if stock < quantity then
+    return -1
+end
+redis.call('INCRBY', KEYS[2], quantity)
+return redis.call('DECRBY', KEYS[1], quantity)
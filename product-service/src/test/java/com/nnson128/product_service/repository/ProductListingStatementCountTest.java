@@ -0,0 +1,137 @@
+package com.nnson128.product_service.repository;
+
+import com.nnson128.product_service.dto.ProductSummaryDTO;
+import com.nnson128.product_service.entity.Category;
+import com.nnson128.product_service.entity.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the SQL statements behind one listing page with Hibernate statistics:
+ * summaries never load entities, and entity pages fetch their categories in the page query.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product_listing;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductListingStatementCountTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        productRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+
+        // Products spread over several categories, so per-row category loads would show up
+        List<Category> categories = categoryRepository.saveAll(List.of(
+                category("Laptops"), category("Phones"), category("Audio"), category("Cameras")));
+        for (int i = 0; i < 50; i++) {
+            productRepository.save(product(i, categories.get(i % categories.size())));
+        }
+    }
+
+    @Test
+    void summaryPageIsOneQueryForRowsAndOneForTheTotal() {
+        statistics.clear();
+        Page<ProductSummaryDTO> page = productRepository.findSummaries(PageRequest.of(1, PAGE_SIZE));
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        assertThat(page.getTotalElements()).isEqualTo(50);
+        assertThat(page.getContent()).allSatisfy(product -> {
+            assertThat(product.getCategoryId()).isNotNull();
+            assertThat(product.getCategoryName()).isNotNull();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void keysetSummaryPageIsOneQuery() {
+        List<ProductSummaryDTO> first = productRepository.findNewestSummaries(PageRequest.of(0, PAGE_SIZE));
+        ProductSummaryDTO last = first.get(first.size() - 1);
+
+        statistics.clear();
+        List<ProductSummaryDTO> next = productRepository.findNewestSummariesBefore(
+                last.getCreatedAt(), last.getId(), PageRequest.of(0, PAGE_SIZE));
+
+        assertThat(next).hasSize(PAGE_SIZE);
+        assertThat(next).extracting(ProductSummaryDTO::getId).doesNotContainAnyElementsOf(
+                first.stream().map(ProductSummaryDTO::getId).toList());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void entityPageFetchesCategoriesWithTheRows() {
+        statistics.clear();
+        List<String> categoryNames = transactionTemplate.execute(status ->
+                productRepository.findAll(PageRequest.of(0, PAGE_SIZE)).stream()
+                        .map(product -> product.getCategory().getName())
+                        .toList());
+
+        assertThat(categoryNames).hasSize(PAGE_SIZE).doesNotContainNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    private static Category category(String name) {
+        return Category.builder()
+                .name(name)
+                .description("Category " + name)
+                .build();
+    }
+
+    private static Product product(int i, Category category) {
+        return Product.builder()
+                .name("Product " + i)
+                .description("Long description of product " + i + " ".repeat(200))
+                .price(new BigDecimal("199000.00").add(BigDecimal.valueOf(i)))
+                .originalPrice(new BigDecimal("249000.00"))
+                .stock(10)
+                .sku("SKU-" + i)
+                .imageUrl("https://cdn.example.com/products/" + i + ".jpg")
+                .category(category)
+                .status("ACTIVE")
+                .build();
+    }
+}
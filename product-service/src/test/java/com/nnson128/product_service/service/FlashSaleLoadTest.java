@@ -0,0 +1,359 @@
+package com.nnson128.product_service.service;
+
+import com.nnson128.product_service.dto.FlashSaleDTO;
+import com.nnson128.product_service.dto.ProductRequestDTO;
+import com.nnson128.product_service.dto.StockBatchRequestDTO.StockLine;
+import com.nnson128.product_service.entity.Category;
+import com.nnson128.product_service.entity.Product;
+import com.nnson128.product_service.repository.CategoryRepository;
+import com.nnson128.product_service.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Many threads buying one hot product, through the row-update path and through flash-sale
+ * sub-counters. Prints the decrement throughput of both and checks that nothing is oversold and
+ * every sale reaches {@code products.stock}. Runs against H2 in MySQL mode and an embedded Redis:
+ * the two paths compare with each other, the absolute numbers do not carry over to production.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:flash_sale;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=40",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // Reconciled by the tests themselves
+        "product.flash-sale.reconcile-interval-ms=86400000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ProductService.class, FlashSaleService.class, FlashSaleLedger.class, FlashSaleLoadTest.RedisTestConfig.class})
+@Slf4j
+class FlashSaleLoadTest {
+
+    private static final int THREADS = 32;
+    private static final int ORDERS_PER_THREAD = 250;
+    private static final int SHARDS = 8;
+
+    private static final int REDIS_PORT = freePort();
+    private static RedisServer redisServer;
+
+    static {
+        try {
+            redisServer = new RedisServer(REDIS_PORT);
+            redisServer.start();
+        } catch (Exception e) {
+            redisServer = null;
+        }
+    }
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private FlashSaleLedger ledger;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private ProductCache productCache;
+
+    @MockBean
+    private ProductSearchIndex productSearchIndex;
+
+    @MockBean
+    private ProductEventPublisher productEventPublisher;
+
+    private Category category;
+
+    @TestConfiguration
+    static class RedisTestConfig {
+
+        @Bean
+        LettuceConnectionFactory redisConnectionFactory() {
+            return new LettuceConnectionFactory("localhost", REDIS_PORT);
+        }
+
+        @Bean
+        StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory) {
+            return new StringRedisTemplate(connectionFactory);
+        }
+
+        @Bean
+        RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+    }
+
+    @BeforeAll
+    static void requireRedis() {
+        assumeTrue(redisServer != null, "embedded Redis is not available on this platform");
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        ledger.reload();
+        productRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+        category = categoryRepository.save(Category.builder().name("Flash deals").build());
+    }
+
+    @Test
+    void hotProductThroughputRowUpdatesVsFlashSale() throws Exception {
+        int stock = THREADS * ORDERS_PER_THREAD;
+        Product rowProduct = product("Row update", stock);
+        Product flashProduct = product("Flash sale", stock);
+        flashSaleService.start(flashProduct.getId(), SHARDS);
+
+        Run rows = buy(rowProduct.getId(), 1, ORDERS_PER_THREAD);
+        Run flash = buy(flashProduct.getId(), 1, ORDERS_PER_THREAD);
+        log.debug("{} threads x {} orders of 1 unit on one product: row update {} orders at {} orders/s, "
+                        + "flash sale {} orders at {} orders/s", THREADS, ORDERS_PER_THREAD,
+                rows.succeeded(), Math.round(rows.perSecond()), flash.succeeded(), Math.round(flash.perSecond()));
+
+        assertThat(rows.succeeded()).isEqualTo(stock);
+        assertThat(flash.succeeded()).isEqualTo(stock);
+        assertThat(productRepository.findStockById(rowProduct.getId())).contains(0);
+
+        // The flash-sale row catches up on the next reconcile
+        assertThat(productRepository.findStockById(flashProduct.getId())).contains(stock);
+        assertThat(flashSaleService.reconcile(flashProduct.getId())).isEqualTo(stock);
+        Product reconciled = productRepository.findById(flashProduct.getId()).orElseThrow();
+        assertThat(reconciled.getStock()).isZero();
+        assertThat(reconciled.getStatus()).isEqualTo("OUT_OF_STOCK");
+    }
+
+    @Test
+    void flashSaleNeverOversellsAndRebalancesDrySubCounters() throws Exception {
+        int stock = 1000;
+        Product product = product("Limited", stock);
+        flashSaleService.start(product.getId(), SHARDS);
+
+        // Far more demand than stock, in mixed quantities, so sub-counters run dry unevenly
+        Run run = buy(product.getId(), 0, 50);
+
+        long left = sum(ledger.readStock(product.getId(), SHARDS));
+        log.debug("{} units sold of {} in {} orders, {} units left", run.units(), stock, run.succeeded(), left);
+        assertThat(sum(ledger.readSold(product.getId(), SHARDS))).isEqualTo(run.units());
+        assertThat(run.units() + left).isEqualTo(stock);
+        // Stock spread over dry sub-counters is still sold: only less than one order's worth can be left
+        assertThat(left).isLessThan(3);
+
+        flashSaleService.reconcile(product.getId());
+        assertThat(productRepository.findStockById(product.getId())).contains((int) left);
+    }
+
+    @Test
+    void rolledBackBatchReturnsFlashSaleStock() {
+        Product flashProduct = product("Flash sale", 10);
+        Product scarce = product("Scarce", 1);
+        flashSaleService.start(flashProduct.getId(), 2);
+
+        assertThat(productService.decreaseStockBatch(List.of(
+                new StockLine(flashProduct.getId(), 4), new StockLine(scarce.getId(), 2))).isSuccess()).isFalse();
+
+        assertThat(sum(ledger.readStock(flashProduct.getId(), 2))).isEqualTo(10);
+        assertThat(sum(ledger.readSold(flashProduct.getId(), 2))).isZero();
+        assertThat(productRepository.findStockById(scarce.getId())).contains(1);
+    }
+
+    @Test
+    void stopAppliesTheLastSalesAndReturnsToRowUpdates() {
+        Product product = product("Flash sale", 20);
+        flashSaleService.start(product.getId(), 4);
+        productService.decreaseStock(product.getId(), 3);
+        productService.increaseStock(product.getId(), 5);
+
+        FlashSaleDTO stopped = flashSaleService.stop(product.getId());
+
+        assertThat(stopped.getAvailableStock()).isEqualTo(22);
+        assertThat(productRepository.findStockById(product.getId())).contains(22);
+        assertThat(productRepository.findFlashSaleById(product.getId())).contains(false);
+        assertThat(flashSaleService.isActive(product.getId())).isFalse();
+        productService.decreaseStock(product.getId(), 2);
+        assertThat(productRepository.findStockById(product.getId())).contains(20);
+    }
+
+    @Test
+    void orderRolledBackAfterStopReturnsItsUnitsToTheRow() throws Exception {
+        Product product = product("Flash sale", 20);
+        flashSaleService.start(product.getId(), 4);
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        ExecutorService order = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> rolledBack = order.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                productService.decreaseStock(product.getId(), 3);
+                taken.countDown();
+                await(stopped);
+                status.setRollbackOnly();
+            }));
+            await(taken);
+            // The stop applies the order's units as sold before the order rolls back
+            assertThat(flashSaleService.stop(product.getId()).getAvailableStock()).isEqualTo(17);
+            stopped.countDown();
+            rolledBack.get();
+        } finally {
+            order.shutdownNow();
+        }
+
+        assertThat(productRepository.findStockById(product.getId())).contains(20);
+        assertThat(redisTemplate.keys("product:flash:*")).isEmpty();
+    }
+
+    @Test
+    void editingAFlashSaleProductKeepsItsModeAndStock() {
+        Product product = product("Flash sale", 20);
+        flashSaleService.start(product.getId(), 4);
+        ProductRequestDTO edit = new ProductRequestDTO("Renamed", null, new BigDecimal("89000.00"), null, 20,
+                null, null, category.getId(), null);
+
+        productService.updateProduct(product.getId(), edit);
+        edit.setStock(50);
+
+        assertThatThrownBy(() -> productService.updateProduct(product.getId(), edit))
+                .hasMessageContaining("flash sale");
+        Product updated = productRepository.findById(product.getId()).orElseThrow();
+        assertThat(updated.getName()).isEqualTo("Renamed");
+        assertThat(updated.getStock()).isEqualTo(20);
+        assertThat(updated.getFlashSale()).isTrue();
+    }
+
+    /**
+     * Every thread places orders against the product; quantity 0 picks 1 to 3 units per order
+     */
+    private Run buy(String productId, int quantity, int ordersPerThread) throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger units = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int thread = 0; thread < THREADS; thread++) {
+                workers.add(pool.submit(() -> {
+                    for (int order = 0; order < ordersPerThread; order++) {
+                        int units1 = quantity > 0 ? quantity : ThreadLocalRandom.current().nextInt(1, 4);
+                        try {
+                            productService.decreaseStock(productId, units1);
+                            succeeded.incrementAndGet();
+                            units.addAndGet(units1);
+                        } catch (RuntimeException e) {
+                            assertThat(e.getMessage()).isEqualTo("Insufficient stock");
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            return new Run(succeeded.get(), units.get(), System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Product product(String name, int stock) {
+        return productRepository.save(Product.builder()
+                .name(name)
+                .price(new BigDecimal("99000.00"))
+                .originalPrice(new BigDecimal("199000.00"))
+                .stock(stock)
+                .category(category)
+                .status("ACTIVE")
+                .build());
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Run(int succeeded, int units, long nanos) {
+
+        double perSecond() {
+            return succeeded * 1_000_000_000.0 / nanos;
+        }
+    }
+}